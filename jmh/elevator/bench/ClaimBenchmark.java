@@ -0,0 +1,68 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.bench;
+
+import elevator.Elevator;
+import elevator.HallCallBoard;
+import elevator.simulate.UniformRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cars on threads of their own claiming and releasing random calls of one board.
+ * Fewer floors, more contention. One thread per core, unless told otherwise with -t.
+ */
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+public class ClaimBenchmark {
+    @State(Scope.Benchmark)
+    public static class Building {
+        @Param({"5", "50", "500"})
+        int floors;
+
+        HallCallBoard board;
+        final AtomicInteger nextCar = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            board = new HallCallBoard(floors);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Car {
+        int id;
+        UniformRandom random;
+
+        @Setup
+        public void setUp(Building building) {
+            id = building.nextCar.getAndIncrement();
+            random = new UniformRandom(Fixtures.SEED + id);
+        }
+    }
+
+    @Benchmark
+    public boolean claim(Building building, Car car) {
+        int floor = car.random.nextInt(building.floors);
+        if (building.board.tryClaim(floor, Elevator.Direction.UP, car.id)) {
+            building.board.release(floor, Elevator.Direction.UP, car.id);
+            return true;
+        }
+        return false;
+    }
+}
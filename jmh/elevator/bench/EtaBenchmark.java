@@ -0,0 +1,63 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.bench;
+
+import elevator.Elevator;
+import elevator.EtaDispatchStrategy;
+import elevator.HallCallBoard;
+import elevator.SimulationConfig;
+import elevator.simulate.Logger;
+import elevator.simulate.UniformRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+
+/**
+ * One assignment of the ETA group controller, against cars spread over the building.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EtaBenchmark {
+    @Param({"5", "50", "500"})
+    int floors;
+
+    @Param({"1", "8", "128"})
+    int cars;
+
+    private HallCallBoard board;
+    private List<Elevator> elevators;
+    private EtaDispatchStrategy strategy;
+    private UniformRandom random;
+
+    @Setup
+    public void setUp() {
+        board = new HallCallBoard(floors);
+        elevators = Fixtures.newElevators(cars, board, Logger.silent());
+        for (Elevator elevator : elevators) {
+            elevator.setCurrentFloor(elevator.getId() * floors / cars);
+            elevator.onRequestVisit((elevator.getId() * 7 + 3) % floors);
+        }
+        strategy = new EtaDispatchStrategy(Fixtures.newConfig(SimulationConfig.ClockMode.SHARED));
+        random = new UniformRandom(Fixtures.SEED);
+    }
+
+    @Benchmark
+    public int assign() {
+        int floor = random.nextInt(floors);
+        strategy.onHallCall(floor, Elevator.Direction.UP, elevators, board);
+        return board.getOwner(floor, Elevator.Direction.UP);
+    }
+}
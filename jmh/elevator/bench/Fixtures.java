@@ -0,0 +1,59 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.bench;
+
+import elevator.Elevator;
+import elevator.HallCallBoard;
+import elevator.SimulationConfig;
+import elevator.simulate.Clock;
+import elevator.simulate.Logger;
+import elevator.simulate.UniformRandom;
+
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the benchmarks are built from. The loggers write to nowhere, so that only their own cost is measured.
+ */
+final class Fixtures {
+    static final int CAPACITY = 2;
+    static final int RUN_SECONDS = 3600;
+    static final long SEED = 202191382;
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return a logger of the level writing to nowhere, with a writer thread of its own. Close it after the trial.
+     */
+    static Logger newLogger(Logger.Level level) {
+        return new Logger(Channels.newChannel(OutputStream.nullOutputStream()), level);
+    }
+
+    static SimulationConfig newConfig(SimulationConfig.ClockMode mode) {
+        return SimulationConfig.defaultConfig(RUN_SECONDS, Clock.MAX_SPEED)
+            .withClockMode(mode)
+            .withSeed(SEED);
+    }
+
+    /**
+     * @return cars of the board's building, never started: the benchmark calls them itself.
+     */
+    static List<Elevator> newElevators(int cars, HallCallBoard board, Logger logger) {
+        SimulationConfig config = newConfig(SimulationConfig.ClockMode.SHARED);
+        Clock clock = new Clock(1, logger);
+        UniformRandom random = new UniformRandom(SEED);
+
+        List<Elevator> elevators = new ArrayList<>();
+        for (int i = 0; i < cars; i++) {
+            elevators.add(new Elevator(i, CAPACITY, clock, config, board, random.split(), logger));
+        }
+        return elevators;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.bench;
+
+import elevator.Fleet;
+import elevator.SimulationConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One tick of every car of the fleet engine, across a few buildings.
+ * Compare with {@link TickBenchmark} divided by the buildings.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FleetBenchmark {
+    private static final int BUILDINGS = 10;
+
+    @Param({"5", "50", "500"})
+    int floors;
+
+    @Param({"1", "8", "128"})
+    int cars;
+
+    private Fleet fleet;
+
+    @Setup
+    public void setUp() {
+        fleet = new Fleet(BUILDINGS, floors, cars, Fixtures.CAPACITY, Fixtures.newConfig(SimulationConfig.ClockMode.SHARED));
+    }
+
+    @Benchmark
+    public int tick() {
+        fleet.advance(0, BUILDINGS, 1);
+        fleet.addTime(1);
+        return fleet.getCurrentFloor(0);
+    }
+}
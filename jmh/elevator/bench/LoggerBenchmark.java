@@ -0,0 +1,51 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.bench;
+
+import elevator.simulate.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One verbose line, written out or filtered by the level.
+ * The writer thread formats the lines off the benchmark thread, and counts towards -prof gc all the same.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LoggerBenchmark {
+    @Param({"NONE", "VERBOSE"})
+    Logger.Level level;
+
+    private Logger logger;
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        logger = Fixtures.newLogger(level);
+    }
+
+    @TearDown
+    public void tearDown() {
+        logger.close();
+    }
+
+    @Benchmark
+    public int verbose() {
+        ++counter;
+        logger.verbose("Elevator #%d: on floor #%d, %d left.", counter, counter & 63, 1);
+        return counter;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.bench;
+
+import elevator.SimulationConfig;
+import elevator.simulate.ElevatorSimulator;
+import elevator.simulate.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A whole simulated hour, in event or shared clock mode. The throughput is in simulated seconds per second.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RunBenchmark {
+    @Param({"EVENT", "SHARED"})
+    SimulationConfig.ClockMode mode;
+
+    @Param({"5", "50", "500"})
+    int floors;
+
+    @Param({"1", "8", "128"})
+    int cars;
+
+    @Param({"NONE", "VERBOSE"})
+    Logger.Level level;
+
+    private Logger logger;
+    private SimulationConfig config;
+
+    @Setup
+    public void setUp() {
+        logger = Fixtures.newLogger(level);
+        config = Fixtures.newConfig(mode);
+    }
+
+    @TearDown
+    public void tearDown() {
+        logger.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixtures.RUN_SECONDS)
+    public int run() {
+        ElevatorSimulator simulator = new ElevatorSimulator(floors, cars, Fixtures.CAPACITY, config, logger);
+        simulator.run();
+        return simulator.getResult().ridersServed();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.bench;
+
+import elevator.Elevator;
+import elevator.HallCallBoard;
+import elevator.simulate.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The next-stop search at its worst: every floor requested, all claimed by somebody else,
+ * so an idle car scans the whole building and finds nothing.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SearchBenchmark {
+    @Param({"5", "50", "500"})
+    int floors;
+
+    private Elevator elevator;
+
+    @Setup
+    public void setUp() {
+        HallCallBoard board = new HallCallBoard(floors);
+        for (int floor = 0; floor < floors; floor++) {
+            for (Elevator.Direction direction : new Elevator.Direction[] {Elevator.Direction.UP, Elevator.Direction.DOWN}) {
+                board.setRequested(floor, direction, true);
+                board.tryClaim(floor, direction, Integer.MAX_VALUE / 2);
+            }
+        }
+        elevator = Fixtures.newElevators(1, board, Logger.silent()).get(0);
+    }
+
+    @Benchmark
+    public int search() {
+        elevator.onTick(false);
+        return elevator.getCurrentFloor();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.bench;
+
+import elevator.Elevator;
+import elevator.HallCallBoard;
+import elevator.simulate.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+
+/**
+ * One tick of every car of a building: the whole tick path, random requests and logging included.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TickBenchmark {
+    @Param({"5", "50", "500"})
+    int floors;
+
+    @Param({"1", "8", "128"})
+    int cars;
+
+    @Param({"NONE", "VERBOSE"})
+    Logger.Level level;
+
+    private Logger logger;
+    private List<Elevator> elevators;
+
+    @Setup
+    public void setUp() {
+        logger = Fixtures.newLogger(level);
+        elevators = Fixtures.newElevators(cars, new HallCallBoard(floors), logger);
+    }
+
+    @TearDown
+    public void tearDown() {
+        logger.close();
+    }
+
+    @Benchmark
+    public long tick() {
+        long sum = 0;
+        for (Elevator elevator : elevators) {
+            elevator.onTick(false);
+            sum += elevator.getCurrentFloor();
+        }
+        return sum;
+    }
+}
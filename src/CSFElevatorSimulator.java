@@ -1,6 +1,34 @@
+import elevator.AgentPopulation;
+import elevator.Elevator;
+import elevator.Fleet;
+import elevator.HardwareCommandQueue;
+import elevator.PassengerAgent;
+import elevator.PressServer;
 import elevator.SimulationConfig;
+import elevator.simulate.CampusResult;
+import elevator.simulate.CampusRunner;
 import elevator.simulate.ElevatorSimulator;
 import elevator.simulate.Logger;
+import elevator.simulate.MetricsRegistry;
+import elevator.simulate.MockHardwareDriver;
+import elevator.simulate.PressLoadGenerator;
+import elevator.simulate.Scenario;
+import elevator.simulate.ScenarioRunner;
+import elevator.simulate.ScenarioSummary;
+import elevator.simulate.SimulationResult;
+import elevator.simulate.SimulationSnapshot;
+import elevator.simulate.StreamingStats;
+import elevator.simulate.SweepCoordinator;
+import elevator.simulate.SweepPlan;
+import elevator.simulate.TrafficProfile;
+import elevator.simulate.UniformRandom;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 
 public class CSFElevatorSimulator {
@@ -16,6 +44,55 @@ public class CSFElevatorSimulator {
         int simulationSeconds = 7200;
         int millisecondsPerSecond = 1;
 
+        if (args.length > 0 && args[0].equals("sweep")) {
+            // e.g. "sweep --workers 4" to run it in 4 worker processes.
+            sweep(args.length > 2 && args[1].equals("--workers") ? Integer.parseInt(args[2]) : 0);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("peak")) {
+            peak();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("campus")) {
+            campus();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("fleet")) {
+            fleet();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("destination")) {
+            destination();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("stats")) {
+            stats();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("agents")) {
+            agents();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("live")) {
+            live();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("hardware")) {
+            hardware();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("whatif")) {
+            whatIf();
+            return;
+        }
+        if (args.length > 1 && args[0].equals("replay")) {
+            replay(Path.of(args[1]));
+            return;
+        }
+
+        // e.g. "metrics" to watch the run live.
+        boolean isPublishingMetrics = args.length > 0 && args[0].equals("metrics");
+
         Logger.setLoggingLevel(Logger.Level.VERBOSE);
 
         SimulationConfig config = SimulationConfig.defaultConfig(
@@ -29,11 +106,400 @@ public class CSFElevatorSimulator {
             numFloors, numElevatorsLarge, elevatorCapacityLarge, config
         );
 
+        if (isPublishingMetrics) {
+            // Live metrics over JMX, e.g. in JConsole, and in the log every few seconds.
+            MetricsRegistry metrics = new MetricsRegistry();
+            metrics.registerMBean("elevator:type=Metrics,name=large");
+            largeElevatorSimulator.setMetrics(metrics, 2000);
+        }
+
         try {
             // smallElevatorSimulator.run();
             largeElevatorSimulator.run();
         } catch (Exception e) {
-            Logger.error(e.getMessage());
+            Logger.getDefault().error(e.getMessage());
+        }
+    }
+
+    /**
+     * Size the fleet: every elevator count, capacity and dispatch strategy, 30 replications each.
+     *
+     * @param workers the number of worker processes, or 0 to run in this JVM.
+     */
+    private static void sweep(int workers) {
+        List<ScenarioSummary> summaries;
+        long[] seeds = ScenarioRunner.seeds(202191382, 30);
+        if (workers > 0) {
+            SweepCoordinator coordinator = new SweepCoordinator(workers, DispatchSweep.class, Logger.getDefault());
+            summaries = coordinator.run(seeds);
+        } else {
+            summaries = new ScenarioRunner().run(new DispatchSweep().scenarios(), seeds);
+        }
+
+        for (ScenarioSummary summary : summaries) {
+            summary.print(Logger.getDefault());
+        }
+    }
+
+    /**
+     * The scenarios of {@link #sweep}, also built by the worker processes.
+     */
+    public static class DispatchSweep implements SweepPlan {
+        @Override
+        public List<Scenario> scenarios() {
+            SimulationConfig config = SimulationConfig.defaultConfig(7200, 0)
+                .withClockMode(SimulationConfig.ClockMode.EVENT);
+
+            List<SimulationConfig> configs = List.of(
+                config,
+                config.withDispatch(SimulationConfig.Dispatch.NEAREST_CAR),
+                config.withDispatch(SimulationConfig.Dispatch.ETA)
+            );
+            return Scenario.grid(new int[] {5}, new int[] {1, 2, 3, 4}, new int[] {1, 2}, configs);
+        }
+    }
+
+    /**
+     * Size the fleet of a 20-floor office tower for its 8 a.m. up-peak hour, 10 replications each.
+     */
+    private static void peak() {
+        int peakSeconds = 3600;
+        SimulationConfig config = SimulationConfig.defaultConfig(peakSeconds, 0)
+            .withClockMode(SimulationConfig.ClockMode.EVENT)
+            .withTrafficProfile(TrafficProfile.constant(peakSeconds, 400, TrafficProfile.UP_PEAK));
+
+        List<Scenario> scenarios = Scenario.grid(
+            new int[] {20}, new int[] {2, 4, 6, 8}, new int[] {8, 13}, List.of(config)
+        );
+        long[] seeds = ScenarioRunner.seeds(202191382, 10);
+
+        for (ScenarioSummary summary : new ScenarioRunner().run(scenarios, seeds)) {
+            summary.print(Logger.getDefault());
+        }
+    }
+
+    /**
+     * Replay a day of real passengers against different fleets of a 20-floor building.
+     * The passengers are the same in every run, so one replication each is enough.
+     */
+    private static void replay(Path passengerFile) {
+        int daySeconds = 24 * 3600;
+        SimulationConfig config = SimulationConfig.defaultConfig(daySeconds, 0)
+            .withClockMode(SimulationConfig.ClockMode.EVENT)
+            .withPassengerFile(passengerFile);
+
+        List<Scenario> scenarios = Scenario.grid(
+            new int[] {20}, new int[] {2, 4, 6, 8}, new int[] {13}, List.of(config)
+        );
+        long[] seeds = ScenarioRunner.seeds(202191382, 1);
+
+        for (ScenarioSummary summary : new ScenarioRunner().run(scenarios, seeds)) {
+            summary.print(Logger.getDefault());
+        }
+    }
+
+    /**
+     * Whether to retrofit the lobby with destination dispatch kiosks:
+     * the up-peak of a 20-floor tower with 6 cars of 13, under hall-call and destination dispatch.
+     */
+    private static void destination() {
+        int peakSeconds = 3600;
+        Logger logger = Logger.getDefault();
+        for (int arrivalsPerHour : new int[] {400, 800, 1200}) {
+            SimulationConfig config = SimulationConfig.defaultConfig(peakSeconds, 0)
+                .withClockMode(SimulationConfig.ClockMode.EVENT)
+                .withSeed(202191382)
+                .withTrafficProfile(TrafficProfile.constant(peakSeconds, arrivalsPerHour, TrafficProfile.UP_PEAK));
+
+            for (SimulationConfig.Dispatch dispatch : List.of(
+                SimulationConfig.Dispatch.SCAN, SimulationConfig.Dispatch.ETA, SimulationConfig.Dispatch.DESTINATION
+            )) {
+                ElevatorSimulator simulator = new ElevatorSimulator(20, 6, 13, config.withDispatch(dispatch), Logger.silent());
+                simulator.run();
+
+                SimulationResult result = simulator.getResult();
+                int stops = 0;
+                for (Elevator elevator : simulator.getService().getElevators()) {
+                    stops += elevator.getStops();
+                }
+                logger.info("%4d/h %-12s served %d, wait p50 %d, p90 %d seconds, ride p50 %d seconds, %.2f served per stop.",
+                    arrivalsPerHour, dispatch, result.ridersServed(), result.waitP50Seconds(), result.waitP90Seconds(),
+                    result.rideP50Seconds(), stops == 0 ? 0 : (double) result.ridersServed() / stops);
+            }
+        }
+        logger.flush();
+    }
+
+    /**
+     * An office day of a 20-floor tower with 6 cars of 13, reported every 5 simulated minutes as it runs,
+     * then 4 replications of it in parallel, their numbers merged.
+     */
+    private static void stats() {
+        SimulationConfig config = SimulationConfig.defaultConfig(12 * 3600, 0)
+            .withClockMode(SimulationConfig.ClockMode.EVENT)
+            .withTrafficProfile(TrafficProfile.officeDay(600));
+        Logger logger = Logger.getDefault();
+        long[] seeds = ScenarioRunner.seeds(202191382, 4);
+
+        List<StreamingStats> replications = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < seeds.length; i++) {
+            // The rolling report of the first one only.
+            StreamingStats stats = new StreamingStats(300, i == 0 ? logger : Logger.silent());
+            ElevatorSimulator simulator = new ElevatorSimulator(
+                20, 6, 13, config.withSeed(seeds[i]), Logger.silent()
+            );
+            simulator.setStreamingStats(stats);
+            replications.add(stats);
+            threads.add(new Thread(simulator::run, "replication-" + i));
+        }
+        threads.forEach(Thread::start);
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        StreamingStats merged = new StreamingStats(300, Logger.silent());
+        for (StreamingStats stats : replications) {
+            merged.merge(stats);
+        }
+        logger.info("All %d replications:", seeds.length);
+        merged.printReport(logger);
+        logger.flush();
+    }
+
+    /**
+     * The busiest hour of a 20-floor tower with 6 cars of 13, its passengers as agents:
+     * 100 000 of them on virtual threads, or 5 000 on platform threads before Java 21.
+     * Most come in at the lobby and take the stairs for up to 3 floors if the queue is long or the car slow.
+     * The visitors go up, stay a while and come back down.
+     */
+    private static void agents() {
+        int seconds = 3600;
+        int numFloors = 20;
+        int passengers = AgentPopulation.hasVirtualThreads() ? 100_000 : 5_000;
+        SimulationConfig config = SimulationConfig.defaultConfig(seconds, 0)
+            .withClockMode(SimulationConfig.ClockMode.EVENT)
+            .withSeed(202191382);
+        ElevatorSimulator simulator = new ElevatorSimulator(numFloors, 6, 13, config, Logger.silent());
+        Logger logger = Logger.getDefault();
+
+        PassengerAgent visitor = me -> {
+            int floor = me.getRandom().nextInt(1, numFloors - 1);
+            if (me.pressHallCall(floor) && me.awaitCar(-1)) {
+                me.awaitArrival();
+                me.sleep(me.getRandom().nextInt(300, 900));
+                PassengerAgent.patient(0).live(me);
+            }
+        };
+
+        AgentPopulation agents = new AgentPopulation(202191382, logger);
+        UniformRandom random = new UniformRandom(202191382);
+        for (int i = 0; i < passengers; i++) {
+            int arrivalTime = random.nextInt(0, seconds - 1);
+            if (random.nextInt(0, 9) == 0) {
+                agents.add(arrivalTime, 0, visitor);
+                continue;
+            }
+            int destination = random.nextInt(1, numFloors - 1);
+            agents.add(arrivalTime, 0, PassengerAgent.impatient(destination, 26, 60, 180, 3));
+        }
+        simulator.getService().setAgents(agents);
+
+        simulator.run();
+        SimulationResult result = simulator.getResult();
+        logger.info("Served %d, %d still waiting, wait p50 %d, p90 %d seconds. %.0f simulated seconds per second.",
+            result.ridersServed(), result.ridersRequested() - result.ridersServed(),
+            result.waitP50Seconds(), result.waitP90Seconds(),
+            simulator.getSimulatedSecondsPerWallSecond());
+        agents.printReport(logger);
+        logger.flush();
+    }
+
+    /**
+     * A live 20-floor building with 8 elevators, on top of its simulated riders,
+     * taking 4 million button presses over 2 local connections while it runs.
+     */
+    private static void live() {
+        int numFloors = 20;
+        int numElevators = 8;
+        SimulationConfig config = SimulationConfig.defaultConfig(60, 100)
+            .withClockMode(SimulationConfig.ClockMode.SHARED)
+            .withSeed(202191382);
+        ElevatorSimulator simulator = new ElevatorSimulator(numFloors, numElevators, 13, config, Logger.silent());
+        Logger logger = Logger.getDefault();
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        try (PressServer server = new PressServer(simulator.getService(), address, 1024, logger)) {
+            server.start();
+            Thread building = new Thread(simulator::run, "building");
+            building.start();
+
+            long startNanos = System.nanoTime();
+            long sent = new PressLoadGenerator(server.getAddress(), numFloors, numElevators, 202191382)
+                .send(2, 2_000_000);
+            // The last frames may still be on their way.
+            while (server.getFramesReceived() < sent && System.nanoTime() - startNanos < 60_000_000_000L) {
+                Thread.sleep(1);
+            }
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+            logger.info("Live: %d presses in %.3f seconds (%.0f per second) over %d connections.",
+                server.getFramesReceived(), seconds, server.getFramesReceived() / seconds, 2);
+            logger.info("\t%d coalesced, %d applied, %d invalid, held back %d times.",
+                server.getFramesCoalesced(), server.getFramesApplied(), server.getFramesInvalid(), server.getPauses());
+            building.join();
+        } catch (IOException e) {
+            logger.error("Live: %s", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.flush();
+    }
+
+    /**
+     * Ten minutes of a 10-floor building with 4 elevators in real time, 10 milliseconds per second,
+     * against cars that confirm their commands in 2 to 8 milliseconds, then in 20 to 80.
+     */
+    private static void hardware() {
+        int numElevators = 4;
+        SimulationConfig config = SimulationConfig.defaultConfig(600, 10).withSeed(202191382);
+        Logger logger = Logger.getDefault();
+
+        for (int latencyMillis : new int[] {2, 20}) {
+            MockHardwareDriver driver = new MockHardwareDriver(numElevators, latencyMillis, latencyMillis * 3, 1);
+            HardwareCommandQueue commands = new HardwareCommandQueue(numElevators, driver, logger);
+            ElevatorSimulator simulator = new ElevatorSimulator(10, numElevators, 8, config, Logger.silent());
+            simulator.getService().setHardwareControl(commands);
+
+            commands.start();
+            simulator.run();
+            if (!commands.close(5000)) {
+                logger.error("Hardware: commands left unconfirmed.");
+            }
+            driver.shutdown();
+
+            logger.info("Latency %d to %d milliseconds: %d steps carried out, %d interlock violations.",
+                latencyMillis, latencyMillis * 4, driver.getStepsExecuted(), driver.getInterlockViolations());
+            commands.printReport(logger);
+        }
+        logger.flush();
+    }
+
+    /**
+     * Warm a 20-floor office tower up from 7 a.m. to 8:45 once,
+     * then try every dispatch strategy on the same queues and cars for the rest of the up-peak.
+     */
+    private static void whatIf() {
+        int warmUpSeconds = 6300;
+        SimulationConfig config = SimulationConfig.defaultConfig(9000, 0)
+            .withClockMode(SimulationConfig.ClockMode.EVENT)
+            .withSeed(202191382)
+            .withTrafficProfile(TrafficProfile.officeDay(600));
+
+        ElevatorSimulator warm = new ElevatorSimulator(20, 6, 13, config, Logger.silent());
+        warm.runUntil(warmUpSeconds);
+        SimulationSnapshot snapshot = warm.snapshot();
+
+        Logger logger = Logger.getDefault();
+        logger.info("Snapshot at second %d: %d bytes.", snapshot.getTime(), snapshot.toBytes().length);
+        // Destination dispatch queues its passengers differently, and cannot take over a snapshot.
+        List<SimulationConfig.Dispatch> dispatches = List.of(
+            SimulationConfig.Dispatch.SCAN, SimulationConfig.Dispatch.NEAREST_CAR, SimulationConfig.Dispatch.ETA
+        );
+        for (SimulationConfig.Dispatch dispatch : dispatches) {
+            ElevatorSimulator fork = new ElevatorSimulator(20, 6, 13, config.withDispatch(dispatch), Logger.silent());
+            try {
+                fork.restore(snapshot);
+            } catch (IOException e) {
+                logger.error("Failed to restore: %s", e.getMessage());
+                return;
+            }
+            fork.run();
+
+            SimulationResult result = fork.getResult();
+            logger.info("%-12s served %d, wait p50 %d, p90 %d, p99 %d seconds, %d not picked up.",
+                dispatch, result.ridersServed(), result.waitP50Seconds(), result.waitP90Seconds(),
+                result.waitP99Seconds(), result.ridersNotPickedUp());
+        }
+        logger.flush();
+    }
+
+    /**
+     * A campus of 1000 20-floor buildings with 100 cars each, for an hour, one shard per core.
+     */
+    private static void fleet() {
+        int numBuildings = 1000;
+        int numFloors = 20;
+        int capacity = 13;
+        SimulationConfig config = SimulationConfig.defaultConfig(3600, 0).withSeed(202191382);
+        Fleet fleet = new Fleet(numBuildings, numFloors, 100, capacity, config);
+
+        CampusResult result = new CampusRunner().run(fleet, config.runningSeconds());
+
+        Logger logger = Logger.getDefault();
+        fleet.printReport(logger, 0);
+        result.print(logger);
+        checkAgainstSimulator(fleet, numFloors, capacity, config, logger);
+        logger.flush();
+    }
+
+    /**
+     * The fleet runs the phases of Elevator on its own: run its first buildings again as simulators
+     * on a shared clock with one worker, which must come out with the very same results.
+     *
+     * @throws IllegalStateException if a building comes out different.
+     */
+    private static void checkAgainstSimulator(
+        Fleet fleet, int numFloors, int capacity, SimulationConfig config, Logger logger
+    ) {
+        int numChecked = Math.min(3, fleet.getNumBuildings());
+        for (int building = 0; building < numChecked; building++) {
+            ElevatorSimulator simulator = new ElevatorSimulator(
+                numFloors, fleet.getCarsPerBuilding(), capacity,
+                config.withSeed(fleet.getSeed(building))
+                    .withClockMode(SimulationConfig.ClockMode.SHARED)
+                    .withClockWorkerThreads(1),
+                Logger.silent()
+            );
+            simulator.run();
+
+            SimulationResult expected = simulator.getResult();
+            SimulationResult actual = fleet.getResult(building);
+            if (!expected.equals(actual)) {
+                logger.error("Building %d: simulator %s, fleet %s.", building, expected, actual);
+                logger.flush();
+                throw new IllegalStateException("Fleet building %d differs from its simulator.".formatted(building));
+            }
         }
+        logger.info("Buildings 0 to %d match their simulators.", numChecked - 1);
+    }
+
+    /**
+     * A portfolio of 200 buildings of all sizes, half of them in their up-peak hour, one shard per core.
+     */
+    private static void campus() {
+        int peakSeconds = 3600;
+        SimulationConfig random = SimulationConfig.defaultConfig(peakSeconds, 0);
+        SimulationConfig peak = random
+            .withTrafficProfile(TrafficProfile.constant(peakSeconds, 300, TrafficProfile.UP_PEAK));
+
+        int[] floors = {5, 10, 20, 40};
+        int[] elevators = {1, 2, 4, 8};
+        List<Scenario> buildings = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            buildings.add(new Scenario(
+                floors[i % floors.length], elevators[i / floors.length % elevators.length], 8,
+                i % 2 == 0 ? random : peak
+            ));
+        }
+
+        CampusResult result = new CampusRunner().run(buildings, 202191382);
+        result.print(Logger.getDefault());
+        Logger.getDefault().flush();
     }
 }
@@ -0,0 +1,704 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import elevator.simulate.Clock;
+import elevator.simulate.EventScheduler;
+import elevator.simulate.Logger;
+import elevator.simulate.UniformRandom;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * The passengers of the building as agents, instead of the traffic of the config.
+ * Each one runs its own {@link PassengerAgent} on a thread of its own from its arrival on:
+ * it presses the hall call, waits parked until a car with room takes it, and again until its floor.
+ * So balking, pressing again or taking the stairs are plain code, see {@link PassengerAgent#impatient}.
+ * <p>
+ * The threads are virtual where the JVM has them (Java 21 and later), and 100 000 waiting passengers
+ * cost little more than their stacks. Before that they are platform threads, good for a few thousand.
+ * <p>
+ * The agents take turns with the simulation: an agent runs only while the thread that woke it waits,
+ * until the agent waits again. So one thing happens to the building at a time, in the same order every run,
+ * and the agents need no locks. They are woken at their times, as a car takes them, and as it lets them off.
+ * Driven by a clock on every tick, or by the event scheduler at every time an agent waits for.
+ */
+public class AgentPopulation implements Clock.OnTickListener, EventScheduler.OnEventListener, RiderListener {
+    private static final int PLATFORM_STACK_BYTES = 256 * 1024;
+
+    // Thread.ofVirtual().unstarted(Runnable), or null if the JVM has no virtual threads.
+    private static final MethodHandle NEW_VIRTUAL_THREAD = findVirtualThreads();
+
+    private enum State {
+        ON_FLOOR, WAITING, RIDING
+    }
+
+    private record Timer(int time, long sequence, Agent agent, int generation) implements Comparable<Timer> {
+        @Override
+        public int compareTo(Timer other) {
+            // Same time? First set, first woken.
+            if (time != other.time) {
+                return Integer.compare(time, other.time);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    // Thrown into the agents still waiting as the population closes, to unwind them.
+    private static final class Stopped extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Stopped() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final class Agent {
+        final int id;
+        final PassengerAgent behavior;
+        final Passenger passenger;
+        final UniformRandom random;
+        Thread thread;
+
+        // Set by the thread waking the agent, cleared by the agent as it waits again.
+        volatile boolean isTurn;
+        Thread waker;
+        boolean isStopping;
+        boolean isDone;
+
+        State state = State.ON_FLOOR;
+        int floor;
+        int destination;
+        int pressTime;
+        // Bumped whenever the agent is woken, so that the timers it set before are dropped.
+        int generation;
+
+        Agent(int id, PassengerAgent behavior, UniformRandom random, int floor) {
+            this.id = id;
+            this.behavior = behavior;
+            this.random = random;
+            this.floor = floor;
+            this.passenger = new Passenger(this);
+        }
+    }
+
+    private final UniformRandom random;
+    private final Logger logger;
+    private final ReentrantLock turn = new ReentrantLock();
+    private final AgentQueues waitingRiders = new AgentQueues();
+
+    // Everything below is guarded by turn, which the thread holds that let the current agent run.
+    private final List<Agent> agents = new ArrayList<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private long sequence;
+    // The agents waiting at each floor, by floor * 2 + direction like the hall call board.
+    private final List<ArrayDeque<Agent>> queues = new ArrayList<>();
+    // The agents inside each car.
+    private final List<List<Agent>> riding = new ArrayList<>();
+
+    private HallCallBoard board;
+    private IntSupplier timeSource;
+    // Whichever drives the agents. The other one is null.
+    private Clock clock;
+    private EventScheduler scheduler;
+    // The earliest event scheduled for the agents.
+    private int nextEventTime = Integer.MAX_VALUE;
+
+    private int stairSecondsPerFloor = 15;
+    private boolean isClosed;
+
+    private int alive;
+    private int maxAlive;
+    private int waiting;
+    private int rides;
+    private int arrivedByCar;
+    private int leftQueue;
+    private int tookStairs;
+    private int finished;
+    private int failed;
+
+    public AgentPopulation(long seed, Logger logger) {
+        this.random = new UniformRandom(seed);
+        this.logger = logger;
+    }
+
+    /**
+     * @return true if the agents run on virtual threads.
+     */
+    public static boolean hasVirtualThreads() {
+        return NEW_VIRTUAL_THREAD != null;
+    }
+
+    public void setStairSecondsPerFloor(int stairSecondsPerFloor) {
+        this.stairSecondsPerFloor = stairSecondsPerFloor;
+    }
+
+    /**
+     * A passenger showing up on a floor, to do what the behavior says from then on.
+     */
+    public void add(int arrivalTime, int floor, PassengerAgent behavior) {
+        turn.lock();
+        try {
+            if (isClosed) {
+                throw new IllegalStateException("The passengers have gone home.");
+            }
+            Agent agent = new Agent(agents.size(), behavior, random.split(), floor);
+            agents.add(agent);
+            wakeAt(agent, arrivalTime);
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    /**
+     * Take over the waiting passengers of the elevators. Call before they start, see {@link ElevatorService#setAgents}.
+     */
+    void attach(HallCallBoard board, List<Elevator> elevators, IntSupplier timeSource) {
+        turn.lock();
+        try {
+            this.board = board;
+            this.timeSource = timeSource;
+            for (int i = 0; i < board.getNumFloors() * 2; i++) {
+                queues.add(new ArrayDeque<>());
+            }
+            for (Elevator elevator : elevators) {
+                riding.add(new ArrayList<>());
+                elevator.setWaitingRiders(waitingRiders);
+                elevator.setRiderListener(this);
+            }
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    /**
+     * Wake the agents on every tick of the clock. Call before the clock starts.
+     */
+    public void attachTo(Clock clock) {
+        this.clock = clock;
+        clock.addOnTickListener(this);
+    }
+
+    /**
+     * Wake the agents at their times. Call before the scheduler runs.
+     */
+    public void attachTo(EventScheduler scheduler) {
+        turn.lock();
+        try {
+            this.scheduler = scheduler;
+            scheduleNextWake();
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    @Override
+    public void onTick(boolean isLastTick) {
+        wakeUntil(clock.getTick());
+    }
+
+    @Override
+    public void onEvent(EventScheduler.EventType type) {
+        wakeUntil(scheduler.getTime());
+    }
+
+    @Override
+    public void onBoarded(int elevatorId, int floor, int destination) {
+        // The agents were woken as the car took them, see AgentQueues.
+    }
+
+    @Override
+    public void onAlighted(int elevatorId, int floor, int riders) {
+        turn.lock();
+        try {
+            List<Agent> off = new ArrayList<>(riders);
+            riding.get(elevatorId).removeIf(agent -> agent.destination == floor && off.add(agent));
+            for (Agent agent : off) {
+                agent.state = State.ON_FLOOR;
+                agent.floor = floor;
+                ++arrivedByCar;
+            }
+            for (Agent agent : off) {
+                if (!agent.isDone && !isClosed) {
+                    resume(agent);
+                }
+            }
+            // They may go on somewhere else at once.
+            if (scheduler != null) {
+                scheduler.signalParked();
+            }
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    /**
+     * Unwind the agents still waiting, wherever they wait, and let their threads end. Call after the run.
+     */
+    public void close() {
+        turn.lock();
+        try {
+            isClosed = true;
+            for (Agent agent : agents) {
+                if (agent.thread != null && !agent.isDone) {
+                    agent.isStopping = true;
+                    resume(agent);
+                }
+            }
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    private void wakeUntil(int now) {
+        turn.lock();
+        try {
+            if (now >= nextEventTime) {
+                nextEventTime = Integer.MAX_VALUE;
+            }
+            while (!timers.isEmpty() && timers.peek().time <= now) {
+                Timer timer = timers.poll();
+                Agent agent = timer.agent;
+                if (timer.generation == agent.generation && !agent.isDone && !isClosed) {
+                    resume(agent);
+                }
+            }
+            if (scheduler != null) {
+                scheduleNextWake();
+                // New calls may be picked up by any idle elevator.
+                scheduler.signalParked();
+            }
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    private void wakeAt(Agent agent, int time) {
+        timers.add(new Timer(time, sequence++, agent, agent.generation));
+        if (scheduler != null) {
+            scheduleNextWake();
+        }
+    }
+
+    private void scheduleNextWake() {
+        if (!timers.isEmpty() && timers.peek().time < nextEventTime) {
+            nextEventTime = timers.peek().time;
+            scheduler.schedule(
+                Math.max(nextEventTime - scheduler.getTime(), 0), EventScheduler.EventType.ARRIVAL, this
+            );
+        }
+    }
+
+    /**
+     * Let the agent run until it waits again. Holding turn.
+     */
+    private void resume(Agent agent) {
+        ++agent.generation;
+        agent.waker = Thread.currentThread();
+        agent.isTurn = true;
+        if (agent.thread == null) {
+            agent.thread = newThread(() -> run(agent), "passenger-" + agent.id);
+            maxAlive = Math.max(maxAlive, ++alive);
+            agent.thread.start();
+        } else {
+            LockSupport.unpark(agent.thread);
+        }
+        while (agent.isTurn) {
+            LockSupport.park(this);
+        }
+    }
+
+    private void run(Agent agent) {
+        try {
+            waitForTurn(agent);
+            agent.behavior.live(agent.passenger);
+            ++finished;
+        } catch (Stopped e) {
+            // Closed while waiting.
+        } catch (RuntimeException e) {
+            ++failed;
+            logger.error("Passenger #%d: %s", agent.id, e);
+        } finally {
+            // A passenger done waiting is gone, unless the run is over. One in a car gets off at its floor.
+            if (agent.state == State.WAITING && !agent.isStopping) {
+                dequeue(agent);
+            }
+            agent.isDone = true;
+            --alive;
+            endTurn(agent);
+        }
+    }
+
+    private void endTurn(Agent agent) {
+        Thread waker = agent.waker;
+        agent.isTurn = false;
+        LockSupport.unpark(waker);
+    }
+
+    private void waitForTurn(Agent agent) {
+        while (!agent.isTurn) {
+            LockSupport.park(this);
+        }
+        if (agent.isStopping) {
+            throw new Stopped();
+        }
+    }
+
+    /**
+     * Agent side: hand the turn back and wait for the next one.
+     */
+    private void yieldTurn(Agent agent) {
+        endTurn(agent);
+        waitForTurn(agent);
+    }
+
+    private void dequeue(Agent agent) {
+        queues.get(WaitingRiders.slotOf(agent.floor, WaitingRiders.directionOf(agent.floor, agent.destination)))
+            .remove(agent);
+        --waiting;
+        agent.state = State.ON_FLOOR;
+    }
+
+    private int now() {
+        return timeSource.getAsInt();
+    }
+
+    private static Thread newThread(Runnable body, String name) {
+        if (NEW_VIRTUAL_THREAD != null) {
+            try {
+                Thread thread = (Thread) NEW_VIRTUAL_THREAD.invoke(body);
+                thread.setName(name);
+                return thread;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to create a virtual thread.", e);
+            }
+        }
+        Thread thread = new Thread(null, body, name, PLATFORM_STACK_BYTES);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static MethodHandle findVirtualThreads() {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object ofVirtual = Thread.class.getMethod("ofVirtual").invoke(null);
+            return MethodHandles.publicLookup()
+                .findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class))
+                .bindTo(ofVirtual);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One agent's view of the building. Only for its own {@link PassengerAgent}, on its own thread.
+     * The calls that wait let the simulation go on and return at the simulated time they wait for.
+     */
+    public final class Passenger {
+        private final Agent agent;
+
+        private Passenger(Agent agent) {
+            this.agent = agent;
+        }
+
+        public int getId() {
+            return agent.id;
+        }
+
+        public int getFloor() {
+            return agent.floor;
+        }
+
+        /**
+         * @return the current simulated second.
+         */
+        public int getTime() {
+            return now();
+        }
+
+        /**
+         * @return a random stream of this passenger's own, the same every run.
+         */
+        public UniformRandom getRandom() {
+            return agent.random;
+        }
+
+        public boolean isRiding() {
+            return agent.state == State.RIDING;
+        }
+
+        /**
+         * @return the passengers already waiting here to go the same way.
+         */
+        public int countWaiting(int destination) {
+            check();
+            Elevator.Direction direction = WaitingRiders.directionOf(agent.floor, destination);
+            if (direction == Elevator.Direction.IDLE) {
+                return 0;
+            }
+            return queues.get(WaitingRiders.slotOf(agent.floor, direction)).size();
+        }
+
+        /**
+         * Queue up for a car to the destination and press the hall call.
+         *
+         * @return false if the destination is this floor.
+         */
+        public boolean pressHallCall(int destination) {
+            check();
+            require(State.ON_FLOOR, "queue up");
+            checkFloor(destination);
+            Elevator.Direction direction = WaitingRiders.directionOf(agent.floor, destination);
+            if (direction == Elevator.Direction.IDLE) {
+                return false;
+            }
+            agent.destination = destination;
+            agent.pressTime = now();
+            agent.state = State.WAITING;
+            queues.get(WaitingRiders.slotOf(agent.floor, direction)).add(agent);
+            ++waiting;
+            board.setRequested(agent.floor, direction, true);
+            return true;
+        }
+
+        /**
+         * Wait in the queue until a car takes this passenger.
+         *
+         * @param timeoutSeconds how long to wait at most. Negative to wait as long as it takes.
+         * @return true if on a car, false if still waiting.
+         */
+        public boolean awaitCar(int timeoutSeconds) {
+            check();
+            if (agent.state == State.RIDING) {
+                return true;
+            }
+            require(State.WAITING, "wait for a car");
+            if (timeoutSeconds == 0) {
+                return false;
+            }
+            if (timeoutSeconds > 0) {
+                wakeAt(agent, now() + timeoutSeconds);
+            }
+            yieldTurn(agent);
+            return agent.state == State.RIDING;
+        }
+
+        /**
+         * Press the hall call again, e.g. as a car left without us.
+         */
+        public void rePress() {
+            check();
+            require(State.WAITING, "press again");
+            board.setRequested(agent.floor, WaitingRiders.directionOf(agent.floor, agent.destination), true);
+        }
+
+        /**
+         * Give up waiting. The hall call stays pressed.
+         */
+        public void leaveQueue() {
+            check();
+            require(State.WAITING, "leave the queue");
+            dequeue(agent);
+            ++leftQueue;
+        }
+
+        /**
+         * Ride until the car lets this passenger off at its destination.
+         */
+        public void awaitArrival() {
+            check();
+            require(State.RIDING, "wait for the destination");
+            while (agent.state == State.RIDING) {
+                yieldTurn(agent);
+            }
+        }
+
+        /**
+         * Do something else on this floor for a while.
+         */
+        public void sleep(int seconds) {
+            check();
+            require(State.ON_FLOOR, "sleep");
+            if (seconds <= 0) {
+                return;
+            }
+            wakeAt(agent, now() + seconds);
+            yieldTurn(agent);
+        }
+
+        /**
+         * Walk to the destination, a few seconds per floor.
+         */
+        public void takeStairs(int destination) {
+            check();
+            require(State.ON_FLOOR, "take the stairs");
+            checkFloor(destination);
+            sleep(Math.abs(destination - agent.floor) * stairSecondsPerFloor);
+            agent.floor = destination;
+            ++tookStairs;
+        }
+
+        private void check() {
+            if (Thread.currentThread() != agent.thread) {
+                throw new IllegalStateException("Passenger #%d is not on its own thread.".formatted(agent.id));
+            }
+            if (agent.isStopping) {
+                throw new Stopped();
+            }
+        }
+
+        private void require(State state, String what) {
+            if (agent.state != state) {
+                throw new IllegalStateException("Passenger #%d cannot %s while %s.".formatted(
+                    agent.id, what, agent.state.name().toLowerCase().replace('_', ' ')
+                ));
+            }
+        }
+
+        private void checkFloor(int floor) {
+            if (floor < 0 || floor >= board.getNumFloors()) {
+                throw new IllegalArgumentException("No floor #%d.".formatted(floor));
+            }
+        }
+    }
+
+    /**
+     * The waiting passengers as the elevators see them: the agents in the queues.
+     * A car taking some wakes them, and keeps them until their floor.
+     */
+    private final class AgentQueues implements BoardingQueues {
+        @Override
+        public int size(int floor, Elevator.Direction direction) {
+            turn.lock();
+            try {
+                return queues.get(WaitingRiders.slotOf(floor, direction)).size();
+            } finally {
+                turn.unlock();
+            }
+        }
+
+        @Override
+        public int board(int elevatorId, int floor, Elevator.Direction direction, int max, long[] riders) {
+            turn.lock();
+            try {
+                ArrayDeque<Agent> queue = queues.get(WaitingRiders.slotOf(floor, direction));
+                int taken = Math.min(Math.min(max, queue.size()), riders.length);
+                Agent[] boarded = new Agent[taken];
+                for (int i = 0; i < taken; i++) {
+                    Agent agent = queue.poll();
+                    riders[i] = WaitingRiders.riderOf(agent.pressTime, agent.destination);
+                    agent.state = State.RIDING;
+                    riding.get(elevatorId).add(agent);
+                    boarded[i] = agent;
+                }
+                waiting -= taken;
+                rides += taken;
+                for (Agent agent : boarded) {
+                    if (!isClosed) {
+                        resume(agent);
+                    }
+                }
+                return taken;
+            } finally {
+                turn.unlock();
+            }
+        }
+
+        @Override
+        public int getWaiting() {
+            return AgentPopulation.this.getWaiting();
+        }
+    }
+
+    /**
+     * @return the passengers added, arrived or not.
+     */
+    public int getAgents() {
+        turn.lock();
+        try {
+            return agents.size();
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    /**
+     * @return the most passengers arrived and not done at once.
+     */
+    public int getMaxAlive() {
+        turn.lock();
+        try {
+            return maxAlive;
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    /**
+     * @return the passengers in the queues.
+     */
+    public int getWaiting() {
+        turn.lock();
+        try {
+            return waiting;
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    public int getRides() {
+        turn.lock();
+        try {
+            return rides;
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    public int getLeftQueue() {
+        turn.lock();
+        try {
+            return leftQueue;
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    public int getTookStairs() {
+        turn.lock();
+        try {
+            return tookStairs;
+        } finally {
+            turn.unlock();
+        }
+    }
+
+    public void printReport(Logger logger) {
+        turn.lock();
+        logger.loggingMutex.lock();
+
+        logger.info("Passenger agents (%s threads). Report: ", hasVirtualThreads() ? "virtual" : "platform");
+        logger.info("\t          Passengers: %d, at most %d at once", agents.size(), maxAlive);
+        logger.info("\t               Rides: %d, %d got off", rides, arrivedByCar);
+        logger.info("\tGave up on the queue: %d", leftQueue);
+        logger.info("\t     Took the stairs: %d", tookStairs);
+        logger.info("\t       Still waiting: %d", waiting);
+        logger.info("\t        Done, failed: %d, %d", finished, failed);
+
+        logger.loggingMutex.unlock();
+        turn.unlock();
+    }
+}
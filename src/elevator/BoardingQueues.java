@@ -0,0 +1,31 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+/**
+ * The passengers waiting at the floors, as an elevator boards them.
+ * See {@link Elevator#setWaitingRiders}.
+ */
+public interface BoardingQueues {
+    /**
+     * @return the passengers waiting at the floor to go that way.
+     */
+    int size(int floor, Elevator.Direction direction);
+
+    /**
+     * Take the first passengers of a queue onto the given elevator.
+     *
+     * @param riders where they go, packed as by {@link WaitingRiders#riderOf}.
+     * @return how many were taken, at most max.
+     */
+    int board(int elevatorId, int floor, Elevator.Direction direction, int max, long[] riders);
+
+    /**
+     * @return the passengers waiting on all floors.
+     */
+    int getWaiting();
+}
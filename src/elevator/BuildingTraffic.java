@@ -0,0 +1,160 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import elevator.simulate.Clock;
+import elevator.simulate.EventScheduler;
+import elevator.simulate.Logger;
+import elevator.simulate.PassengerSource;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The passengers of the whole building, instead of random requests made up by each elevator.
+ * Takes them from a {@link PassengerSource} as their time comes,
+ * queues them at their floor and presses the hall call.
+ * Driven by a clock on every tick, or by the event scheduler at every arrival time.
+ */
+public class BuildingTraffic implements Clock.OnTickListener, EventScheduler.OnEventListener {
+    protected final PassengerSource source;
+    protected final WaitingRiders waitingRiders;
+    protected final HallCallBoard board;
+    protected final Logger logger;
+
+    // Whichever drives the arrivals. The other one is null.
+    protected Clock clock;
+    protected EventScheduler scheduler;
+
+    protected int arrivals;
+
+    // Gives every party a car as it arrives, instead of queueing it at a hall call. Null if not.
+    protected DestinationDispatchStrategy destinationDispatch;
+
+    public BuildingTraffic(PassengerSource source, WaitingRiders waitingRiders, HallCallBoard board, Logger logger) {
+        this.source = source;
+        this.waitingRiders = waitingRiders;
+        this.board = board;
+        this.logger = logger;
+    }
+
+    /**
+     * Hand the arrivals to destination dispatch. Call before they come.
+     */
+    public void setDestinationDispatch(DestinationDispatchStrategy destinationDispatch) {
+        this.destinationDispatch = destinationDispatch;
+    }
+
+    /**
+     * Take the arrivals on every tick of the clock. Call before the clock starts.
+     */
+    public void attachTo(Clock clock) {
+        this.clock = clock;
+        clock.addOnTickListener(this);
+    }
+
+    /**
+     * Take the arrivals at their time. Call before the scheduler runs.
+     */
+    public void attachTo(EventScheduler scheduler) {
+        this.scheduler = scheduler;
+        scheduleNextArrival();
+    }
+
+    @Override
+    public void onTick(boolean isLastTick) {
+        takeArrivalsUntil(clock.getTick());
+    }
+
+    @Override
+    public void onEvent(EventScheduler.EventType type) {
+        takeArrivalsUntil(scheduler.getTime());
+        scheduleNextArrival();
+        // New calls may be picked up by any idle elevator.
+        scheduler.signalParked();
+    }
+
+    /**
+     * Stop taking passengers, and release the source, e.g. its file.
+     */
+    public void close() throws IOException {
+        source.close();
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(arrivals);
+        waitingRiders.writeState(out);
+    }
+
+    /**
+     * Replace the waiting passengers with those written by {@link #writeState},
+     * and skip the passengers of the source up to the time of the snapshot: they are queued or gone already.
+     * The source must bring the same passengers as the one of the snapshot, e.g. the same file.
+     */
+    void readState(DataInput in, int time) throws IOException {
+        arrivals = in.readInt();
+        waitingRiders.readState(in);
+        while (source.peekTime() <= time) {
+            source.pop();
+        }
+    }
+
+    public int getArrivals() {
+        return arrivals;
+    }
+
+    public WaitingRiders getWaitingRiders() {
+        return waitingRiders;
+    }
+
+    /**
+     * @return the passengers not on a car yet, on all floors.
+     */
+    public int getWaiting() {
+        return destinationDispatch != null ? destinationDispatch.getWaiting() : waitingRiders.getWaiting();
+    }
+
+    private void scheduleNextArrival() {
+        int next = source.peekTime();
+        if (next != PassengerSource.NO_MORE_ARRIVALS) {
+            scheduler.schedule(
+                Math.max(next - scheduler.getTime(), 0), EventScheduler.EventType.ARRIVAL, this
+            );
+        }
+    }
+
+    private void takeArrivalsUntil(int time) {
+        while (source.peekTime() <= time) {
+            int arrivalTime = source.peekTime();
+            int origin = source.peekOrigin();
+            int destination = source.peekDestination();
+            int partySize = source.peekPartySize();
+            source.pop();
+
+            Elevator.Direction direction = WaitingRiders.directionOf(origin, destination);
+            if (direction == Elevator.Direction.IDLE || !isFloorIndexValid(origin) || !isFloorIndexValid(destination)) {
+                continue;
+            }
+
+            arrivals += partySize;
+            logger.verbose("New party of %d on floor #%d, going to floor #%d.", partySize, origin, destination);
+            if (destinationDispatch != null) {
+                destinationDispatch.onArrival(origin, destination, partySize, arrivalTime);
+                continue;
+            }
+            for (int i = 0; i < partySize; i++) {
+                waitingRiders.add(origin, arrivalTime, destination);
+            }
+            board.setRequested(origin, direction, true);
+        }
+    }
+
+    private boolean isFloorIndexValid(int index) {
+        return index >= 0 && index < board.getNumFloors();
+    }
+}
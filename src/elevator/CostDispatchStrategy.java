@@ -0,0 +1,110 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Group controller giving every call to the elevator it costs the least, as the subclass counts the cost.
+ * Full elevators get no calls, as nobody could board them.
+ * <p>
+ * A call is looked at again whenever any elevator passes a floor or leaves a stop, and handed on if its
+ * elevator filled up meanwhile, or another one now costs clearly less. Calls an elevator is already
+ * heading for stay with it.
+ */
+public abstract class CostDispatchStrategy implements DispatchStrategy {
+    private static final Elevator.Direction[] DIRECTIONS = {Elevator.Direction.UP, Elevator.Direction.DOWN};
+
+    /**
+     * @return what serving the call costs the elevator, e.g. seconds or floors. Lower is better.
+     */
+    protected abstract int costOf(Elevator elevator, int floor, Elevator.Direction direction);
+
+    /**
+     * @return how much less another elevator must cost to take a call over. Keeps calls from changing hands
+     * back and forth over estimates that are about the same.
+     */
+    protected abstract int handOverMargin();
+
+    @Override
+    public boolean isSelfClaiming() {
+        return false;
+    }
+
+    @Override
+    public void onHallCall(int floor, Elevator.Direction direction, List<Elevator> elevators, HallCallBoard board) {
+        // All full? It waits for the next elevator step to look again.
+        Elevator best = findCheapest(floor, direction, elevators);
+        if (best != null) {
+            board.assign(floor, direction, best.getId());
+        }
+    }
+
+    @Override
+    public boolean onElevatorStep(List<Elevator> elevators, HallCallBoard board) {
+        boolean isChanged = false;
+        for (Elevator.Direction direction : DIRECTIONS) {
+            AtomicLongArray words = board.wordsOf(direction);
+            for (int word = 0; word < words.length(); word++) {
+                long requested = words.get(word);
+                while (requested != 0) {
+                    int floor = (word << 6) + Long.numberOfTrailingZeros(requested);
+                    requested &= requested - 1;
+                    if (board.isRequested(floor, direction)) {
+                        isChanged |= reconsider(floor, direction, elevators, board);
+                    }
+                }
+            }
+        }
+        return isChanged;
+    }
+
+    /**
+     * @return true if the call changed hands.
+     */
+    private boolean reconsider(int floor, Elevator.Direction direction, List<Elevator> elevators, HallCallBoard board) {
+        int owner = board.getOwner(floor, direction);
+        Elevator current = owner >= 0 ? elevators.get(owner) : null;
+        if (current != null && !current.isFull() && current.getDestinationFloor() == floor) {
+            // On its way already.
+            return false;
+        }
+
+        Elevator best = findCheapest(floor, direction, elevators);
+        if (best == null || best == current) {
+            return false;
+        }
+        if (
+            current != null && !current.isFull()
+            && costOf(best, floor, direction) + handOverMargin() >= costOf(current, floor, direction)
+        ) {
+            return false;
+        }
+        board.assign(floor, direction, best.getId());
+        return true;
+    }
+
+    /**
+     * @return the elevator with room costing the least, null if all are full.
+     */
+    private Elevator findCheapest(int floor, Elevator.Direction direction, List<Elevator> elevators) {
+        Elevator best = null;
+        int bestCost = Integer.MAX_VALUE;
+        for (Elevator elevator : elevators) {
+            if (elevator.isFull()) {
+                continue;
+            }
+            int cost = costOf(elevator, floor, direction);
+            if (cost < bestCost) {
+                best = elevator;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+}
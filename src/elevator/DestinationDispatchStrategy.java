@@ -0,0 +1,158 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Group controller for destination dispatch: passengers key in their destination at the floor, not in the car.
+ * Every party is given a car as it arrives, and waits for that car only. The car is the one adding the least time:
+ * its estimated arrival at the origin for the party, plus a stop at the origin and one at the destination
+ * for everybody the car has, unless it stops there anyway. So parties going to the same floor share a car,
+ * and each car makes fewer stops per trip.
+ * A car is never given more riders than it holds; parties no car has room for wait for riders to get off.
+ * <p>
+ * No hall calls are pressed. Each car goes to its pickups as if its own button for the floor was pressed,
+ * and takes everybody waiting for it there, whichever way it is going.
+ * Needs the passengers of the building, see {@link BuildingTraffic}.
+ */
+public class DestinationDispatchStrategy implements DispatchStrategy, RiderListener {
+    private final EtaDispatchStrategy eta;
+    private final int stopSeconds;
+
+    // Guarded by this.
+    private List<Elevator> elevators;
+    // The passengers waiting for each car, by floor and direction.
+    private WaitingRiders[] pickups;
+    // The riders given to each car and not off yet: waiting for it, or inside.
+    private int[] committed;
+    // Why each car stops at each floor: riders to pick up there, plus riders to let off there.
+    private int[][] plannedStops;
+    private final ArrayDeque<Party> unassigned = new ArrayDeque<>();
+    private int unassignedRiders;
+
+    private record Party(int origin, int destination, int size, int arrivalTime) {
+    }
+
+    public DestinationDispatchStrategy(SimulationConfig config) {
+        this.eta = new EtaDispatchStrategy(config);
+        this.stopSeconds = config.openDoorSeconds() + config.waitOnBoardSeconds() + config.closeDoorSeconds();
+    }
+
+    @Override
+    public boolean isSelfClaiming() {
+        return false;
+    }
+
+    @Override
+    public void onHallCall(int floor, Elevator.Direction direction, List<Elevator> elevators, HallCallBoard board) {
+        // No hall calls in this mode.
+    }
+
+    /**
+     * Take over the boarding of the elevators. Call before they start.
+     */
+    public synchronized void attach(List<Elevator> elevators, int numFloors) {
+        this.elevators = List.copyOf(elevators);
+        this.pickups = new WaitingRiders[elevators.size()];
+        this.committed = new int[elevators.size()];
+        this.plannedStops = new int[elevators.size()][numFloors];
+        for (Elevator elevator : elevators) {
+            pickups[elevator.getId()] = new WaitingRiders(numFloors);
+            elevator.setWaitingRiders(pickups[elevator.getId()]);
+            elevator.setRiderListener(this);
+            elevator.setBoardingAssignedRiders(true);
+        }
+    }
+
+    /**
+     * A party keyed in its destination. Parties larger than a car are split.
+     */
+    public synchronized void onArrival(int origin, int destination, int size, int arrivalTime) {
+        int capacity = elevators.get(0).getCapacity();
+        for (int left = size; left > 0; left -= capacity) {
+            Party party = new Party(origin, destination, Math.min(left, capacity), arrivalTime);
+            // First come, first served: nobody overtakes the parties already waiting for room.
+            if (!unassigned.isEmpty() || !place(party)) {
+                unassigned.add(party);
+                unassignedRiders += party.size;
+            }
+        }
+    }
+
+    /**
+     * @return false if no car has room for the party.
+     */
+    private boolean place(Party party) {
+        Elevator.Direction direction = WaitingRiders.directionOf(party.origin, party.destination);
+        int best = -1;
+        int bestSeconds = Integer.MAX_VALUE;
+        for (Elevator elevator : elevators) {
+            int car = elevator.getId();
+            if (committed[car] + party.size > elevator.getCapacity()) {
+                continue;
+            }
+            // A new stop holds up everybody the car already has, and the party itself.
+            int delayed = committed[car] + party.size;
+            int seconds = eta.estimateSeconds(elevator, party.origin, direction) * party.size;
+            if (plannedStops[car][party.origin] == 0) {
+                seconds += stopSeconds * delayed;
+            }
+            if (plannedStops[car][party.destination] == 0) {
+                seconds += stopSeconds * delayed;
+            }
+            if (seconds < bestSeconds) {
+                best = car;
+                bestSeconds = seconds;
+            }
+        }
+        if (best == -1) {
+            return false;
+        }
+
+        committed[best] += party.size;
+        plannedStops[best][party.origin] += party.size;
+        plannedStops[best][party.destination] += party.size;
+        for (int i = 0; i < party.size; i++) {
+            pickups[best].add(party.origin, party.arrivalTime, party.destination);
+        }
+        elevators.get(best).pressCarButton(party.origin);
+        return true;
+    }
+
+    /**
+     * Called by the car as a rider given to it boards.
+     */
+    @Override
+    public synchronized void onBoarded(int car, int origin, int destination) {
+        --plannedStops[car][origin];
+    }
+
+    /**
+     * Called by the car as its riders get off. The room they leave goes to the parties waiting for it.
+     */
+    @Override
+    public synchronized void onAlighted(int car, int floor, int riders) {
+        committed[car] -= riders;
+        plannedStops[car][floor] -= riders;
+        while (!unassigned.isEmpty() && place(unassigned.peek())) {
+            unassignedRiders -= unassigned.poll().size;
+        }
+    }
+
+    /**
+     * @return the passengers not on a car yet, assigned or not.
+     */
+    public synchronized int getWaiting() {
+        int waiting = unassignedRiders;
+        for (WaitingRiders riders : pickups) {
+            waiting += riders.getWaiting();
+        }
+        return waiting;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import java.util.List;
+
+/**
+ * Decides which elevator serves which outside request (hall call).
+ * Owned by {@link ElevatorService}, and called from whichever thread presses the call,
+ * so implementations must be thread-safe.
+ */
+public interface DispatchStrategy {
+    /**
+     * @return true if idle elevators may claim unassigned calls on their own, as in SCAN.
+     * false if elevators only go for the calls assigned to them.
+     */
+    boolean isSelfClaiming();
+
+    /**
+     * Called when a call is pressed. Assign it with {@link HallCallBoard#assign}, or leave it unclaimed.
+     */
+    void onHallCall(int floor, Elevator.Direction direction, List<Elevator> elevators, HallCallBoard board);
+
+    /**
+     * Called as an elevator decides where to go next: at every floor it passes and after every stop.
+     * Hand pending calls on with {@link HallCallBoard#assign} if another elevator serves them better by now,
+     * e.g. their elevator filled up.
+     *
+     * @return true if any call changed hands.
+     */
+    default boolean onElevatorStep(List<Elevator> elevators, HallCallBoard board) {
+        return false;
+    }
+
+    static DispatchStrategy of(SimulationConfig.Dispatch dispatch, SimulationConfig config) {
+        return switch (dispatch) {
+            case SCAN -> new ScanDispatchStrategy();
+            case NEAREST_CAR -> new NearestCarDispatchStrategy();
+            case ETA -> new EtaDispatchStrategy(config);
+            case DESTINATION -> new DestinationDispatchStrategy(config);
+        };
+    }
+}
@@ -7,18 +7,28 @@
 package elevator;
 
 import elevator.simulate.Clock;
+import elevator.simulate.EventScheduler;
+import elevator.simulate.LatencyHistogram;
+import elevator.simulate.StreamingStats;
 import elevator.simulate.Logger;
+import elevator.simulate.MetricsRegistry;
+import elevator.simulate.TraceWriter;
 import elevator.simulate.UniformRandom;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The implementation of the elevator system.
  * Includes all running logics.
- * Driven by the ticks of {@link Clock}.
+ * Driven by the ticks of {@link Clock}, or by the events of {@link EventScheduler}.
  */
-public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener {
+public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener,
+    EventScheduler.OnEventListener {
     public enum Direction {
         UP, DOWN, IDLE
     }
@@ -40,16 +50,32 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
         ERROR
     }
 
-    // Clock.
+    private static final Direction[] HALL_CALL_DIRECTIONS = {Direction.UP, Direction.DOWN};
+
+    // Clock. Null if driven by the event scheduler.
     protected final Clock clock;
 
+    // Event scheduler. Null if driven by the clock.
+    protected final EventScheduler scheduler;
+
     // Status for floors.
+    protected final HallCallBoard board;
     List<Floor> floors;
 
     // floor X has Y visitors.
     int[] floorsToVisitCount;
+
+    // Bit X is set if floor X has visitors, or its car button was pressed, 64 floors per word.
+    long[] carCallWords;
+    int carCallFloors;
+
+    // Car buttons pressed from other threads, taken on the next step. See pressCarButton.
+    protected final AtomicLongArray pressedCarButtons;
+    protected volatile boolean hasPressedCarButtons;
     protected int currentFloor;
     protected int destinationFloor;
+    // The destination is a call assigned to us the other way, past everything else on this run.
+    protected boolean isTurning;
 
     // Status for elevator running.
     protected Status status;
@@ -62,27 +88,100 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
     protected int ridersRequested;
     protected int ridersInside;
 
+    // Every rider boarded, and the ones inside: ridersInside of them, by index in the log.
+    protected final PassengerLog passengers = new PassengerLog();
+    protected final int[] ridersOnBoard;
+
+    // Seconds from pressing the call to boarding, and from boarding to alighting.
+    protected final LatencyHistogram waitTimes = new LatencyHistogram();
+    protected final LatencyHistogram rideTimes = new LatencyHistogram();
+
+    // When the riders of the current stop started waiting: the oldest call served here.
+    // -1 if we stopped for riders inside only, then whoever boards just came.
+    protected int waitingSince = -1;
+
     protected final int id;
     protected final int capacity;
     protected final SimulationConfig config;
 
     protected int randomRequestCounter = 0;
 
+    // Ticks to wait before the current phase completes.
+    // Kept per elevator, as the clock may be shared by all elevators.
+    protected int phaseTicksRemaining = 0;
+
     // Utility variables.
     UniformRandom random;
+    protected final Logger logger;
+
+    // Binary event trace. Null if not traced.
+    protected TraceWriter trace;
+
+    // Seconds spent in the phases of each status, by ordinal. Null if no metrics.
+    protected LongAdder[] phaseSeconds;
+
+    // The passengers of the building, waiting at the floors.
+    // Null if the elevator makes up random requests instead.
+    protected BoardingQueues waitingRiders;
+    protected long[] boardingRiders;
+
+    // Who decides which hall calls this elevator serves.
+    protected DispatchStrategy dispatchStrategy = new ScanDispatchStrategy();
+    protected List<Elevator> dispatchGroup = List.of();
+
+    // Where the door and motor commands go.
+    protected HardwareControl hardware = HardwareControl.NONE;
+
+    // Told as riders board and get off, e.g. by destination dispatch. Null if nobody listens.
+    protected RiderListener riderListener;
+
+    // Set in destination dispatch: the riders waiting for this elevator board whichever way it goes,
+    // and press no hall calls.
+    protected boolean isBoardingAssignedRiders;
+
+    // Times the door opened for riders.
+    protected int stops;
 
+    // Wait and ride times and loads as they happen, by window. Null if not taken.
+    protected StreamingStats stats;
 
-    public Elevator(int id, int capacity, Clock clock, SimulationConfig elevatorConfig, List<Floor> floors) {
+
+    public Elevator(
+        int id, int capacity, Clock clock, SimulationConfig elevatorConfig, HallCallBoard board,
+        UniformRandom random, Logger logger
+    ) {
+        this(id, capacity, clock, null, elevatorConfig, board, random, logger);
+        this.clock.addOnTickListener(this);
+        this.clock.addOnTickDoneListener(this);
+    }
+
+    public Elevator(
+        int id, int capacity, EventScheduler scheduler, SimulationConfig elevatorConfig, HallCallBoard board,
+        UniformRandom random, Logger logger
+    ) {
+        this(id, capacity, null, scheduler, elevatorConfig, board, random, logger);
+        this.scheduler.addOnTickDoneListener(this);
+    }
+
+    private Elevator(
+        int id, int capacity, Clock clock, EventScheduler scheduler,
+        SimulationConfig elevatorConfig, HallCallBoard board, UniformRandom random, Logger logger
+    ) {
         this.id = id;
         this.capacity = capacity;
         this.config = elevatorConfig;
         this.clock = clock;
+        this.scheduler = scheduler;
 
-        this.floors = floors;
+        this.board = board;
+        this.floors = board.getFloors();
         this.currentFloor = 0;
         this.destinationFloor = -1;
         this.floorsToVisitCount = new int[floors.size()];
         Arrays.fill(floorsToVisitCount, 0);
+        this.carCallWords = new long[(floors.size() + 63) / 64];
+        this.carCallFloors = 0;
+        this.pressedCarButtons = new AtomicLongArray(carCallWords.length);
 
         this.status = Status.IDLE;
         this.direction = Direction.IDLE;
@@ -92,11 +191,10 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
         this.ridersInside = 0;
         this.ridersRequested = 0;
         this.ridersServed = 0;
+        this.ridersOnBoard = new int[capacity];
 
-        this.random = new UniformRandom();
-
-        this.clock.addOnTickListener(this);
-        this.clock.addOnTickDoneListener(this);
+        this.random = random;
+        this.logger = logger;
     }
 
     protected boolean isFloorIndexValid(int index) {
@@ -112,7 +210,36 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
         if (!isFloorIndexValid(floorIndex)) {
             return;
         }
-        ++floorsToVisitCount[floorIndex];
+        if (floorsToVisitCount[floorIndex]++ == 0) {
+            carCallWords[floorIndex >>> 6] |= 1L << floorIndex;
+            ++carCallFloors;
+        }
+    }
+
+    /**
+     * Press the button of a floor on the car panel, from any thread, e.g. in live mode.
+     * Unlike {@link #onRequestVisit}, nobody is counted in: the car just stops there.
+     * Taken on the elevator's own thread at its next tick or event.
+     */
+    public void pressCarButton(int floorIndex) {
+        if (!isFloorIndexValid(floorIndex)) {
+            return;
+        }
+        pressedCarButtons.getAndAccumulate(floorIndex >>> 6, 1L << floorIndex, (word, bit) -> word | bit);
+        hasPressedCarButtons = true;
+    }
+
+    private void takePressedCarButtons() {
+        if (!hasPressedCarButtons) {
+            return;
+        }
+        // Cleared first: a press coming in meanwhile sets it again.
+        hasPressedCarButtons = false;
+        for (int word = 0; word < carCallWords.length; word++) {
+            long pressed = pressedCarButtons.getAndSet(word, 0) & ~carCallWords[word];
+            carCallWords[word] |= pressed;
+            carCallFloors += Long.bitCount(pressed);
+        }
     }
 
     /**
@@ -120,8 +247,20 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
      * Start to accept passengers.
      */
     public void startService() {
+        if (scheduler != null) {
+            // The first decision is made on the first tick, like the clock does.
+            scheduler.schedule(1, EventScheduler.EventType.DISPATCH, this);
+            if (waitingRiders == null) {
+                scheduler.schedule(nextRandomRequestDelay(), EventScheduler.EventType.ARRIVAL, this);
+            }
+            return;
+        }
+        // A shared clock is started by whichever elevator comes first.
+        if (clock.isRunning()) {
+            return;
+        }
         if (!clock.start(config.runningSeconds(), config.millisecondsPerSecond())) {
-            Logger.error("Elevator #%d failed to start.", id);
+            logger.error("Elevator #%d failed to start.", id);
         }
     }
 
@@ -129,114 +268,238 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
      * Blocks until the running time is up or the elevator is stopped.
      */
     public void waitForStop() {
-        clock.waitForStop();
+        if (clock != null) {
+            clock.waitForStop();
+        }
     }
 
     @Override
-    public void onTick(boolean isLastTick, boolean isSkippingTick) {
+    public void onTick(boolean isLastTick) {
         if (isDoorOpen() && isMoving()) {
             abort("Elevator is moving while door is open.");
         }
+        takePressedCarButtons();
 
-        // Generate two random floor requests (outside elevator).
-        if (++randomRequestCounter >= config.randomRequestTickGenerator().call()) {
-            int floorIndex0 = random.nextInt(currentFloor, floors.size() - 1);
-            int floorIndex1 = random.nextInt(0, currentFloor);
+        // Generate two random floor requests (outside elevator), unless the building has passengers.
+        if (waitingRiders == null && ++randomRequestCounter >= config.randomRequestTickGenerator().next(random)) {
+            generateRandomRequests();
+            randomRequestCounter = 0;
+        }
 
-            if (floorIndex0 != currentFloor) {
-                floors.get(floorIndex0).setUpRequested(true);
-                Logger.verbose("Elevator #%d: new random request, floor #%d, up.",
-                    id, floorIndex0);
-            }
+        // Never count below zero, or the idle ticks would eat up later phases.
+        if (phaseTicksRemaining > 0 && --phaseTicksRemaining > 0) {
+            return;
+        }
 
-            if (floorIndex1 != currentFloor) {
-                floors.get(floorIndex1).setDownRequested(true);
-                Logger.verbose("Elevator #%d: new random request, floor #%d, down.",
-                    id, floorIndex1);
-            }
+        phaseTicksRemaining = step();
+    }
 
-            randomRequestCounter = 0;
+    @Override
+    public void onEvent(EventScheduler.EventType type) {
+        if (isDoorOpen() && isMoving()) {
+            abort("Elevator is moving while door is open.");
         }
+        takePressedCarButtons();
 
-        if (isSkippingTick) {
+        if (type == EventScheduler.EventType.ARRIVAL) {
+            generateRandomRequests();
+            scheduler.schedule(nextRandomRequestDelay(), EventScheduler.EventType.ARRIVAL, this);
+            // New requests may be picked up by any idle elevator.
+            scheduler.signalParked();
             return;
         }
 
+        Status phase = status;
+        Direction previousDirection = direction;
+        int seconds = step();
+
+        // Nothing to do, even without a direction. Sleep until the next request comes.
+        // Dropping the direction is a decision of its own: look both ways on the next tick.
+        if (
+            phase == Status.IDLE && previousDirection == Direction.IDLE
+            && status == Status.IDLE && destinationFloor == -1
+        ) {
+            scheduler.park(this);
+            return;
+        }
+
+        // A phase always takes at least one second, same as one tick of the clock.
+        scheduler.schedule(Math.max(seconds, 1), completionEventOf(phase), this);
+    }
+
+    /**
+     * @return the seconds until the next random request,
+     * with the same odds as counting {@link #randomRequestCounter} one tick at a time.
+     */
+    private int nextRandomRequestDelay() {
+        int seconds = 1;
+        while (seconds < config.randomRequestTickGenerator().next(random)) {
+            ++seconds;
+        }
+        return seconds;
+    }
+
+    private static EventScheduler.EventType completionEventOf(Status status) {
+        return switch (status) {
+            case MOVING_UP, MOVING_DOWN -> EventScheduler.EventType.FLOOR_REACHED;
+            case OPENING_DOOR -> EventScheduler.EventType.DOOR_OPENED;
+            case CLOSING_DOOR -> EventScheduler.EventType.DOOR_CLOSED;
+            case WAITING_BOARDING -> EventScheduler.EventType.BOARDING_COMPLETE;
+            default -> EventScheduler.EventType.DISPATCH;
+        };
+    }
+
+    /**
+     * Run the current phase of the elevator.
+     *
+     * @return the seconds the phase takes.
+     */
+    protected int step() {
+        Status phase = status;
+        int seconds = runPhase();
+        // Counted as the phase begins.
+        if (phaseSeconds != null) {
+            phaseSeconds[phase.ordinal()].add(seconds);
+        }
+        return seconds;
+    }
+
+    private int runPhase() {
         switch (status) {
             case IDLE -> {
+                // Past a floor or a stop: the calls may be better off with another elevator by now.
+                if (dispatchStrategy.onElevatorStep(dispatchGroup, board) && scheduler != null) {
+                    scheduler.signalParked();
+                }
                 handleIdle();
+                // Stop at this floor, unless going on to the next one.
+                if (isMoving() && status != Status.MOVING_UP && status != Status.MOVING_DOWN) {
+                    setMoving(false);
+                }
+                return 0;
             }
 
             case MOVING_UP -> {
-                clock.skip(config.moveUpToNeighbourFloorSeconds());
                 if (currentFloor == floors.size() - 1) {
                     abort("Elevator is moving to an invalid floor.");
                 }
+                setMoving(true);
                 ++currentFloor;
-                HardwareControl.moveUp(id);
+                hardware.moveUp(id);
                 setStatus(Status.IDLE);
+                return config.moveUpToNeighbourFloorSeconds();
             }
 
             case MOVING_DOWN -> {
-                clock.skip(config.moveDownToNeighbourFloorSeconds());
                 if (currentFloor == 0) {
                     abort("Elevator is moving to an invalid floor.");
                 }
+                setMoving(true);
                 --currentFloor;
-                HardwareControl.moveDown(id);
+                hardware.moveDown(id);
                 setStatus(Status.IDLE);
+                return config.moveDownToNeighbourFloorSeconds();
             }
 
             case OPENING_DOOR -> {
-                clock.skip(config.openDoorSeconds());
                 setDoorOpen(true);
                 setStatus(Status.WAITING_BOARDING);
+                return config.openDoorSeconds();
             }
 
             case CLOSING_DOOR -> {
-                clock.skip(config.closeDoorSeconds());
                 setDoorOpen(false);
                 setStatus(Status.IDLE);
+                return config.closeDoorSeconds();
             }
 
             case WAITING_BOARDING -> {
-                clock.skip(config.waitOnBoardSeconds());
                 setStatus(Status.CLOSING_DOOR);
                 handleWaitingOnBoard();
+                if (stats != null) {
+                    stats.record(StreamingStats.Metric.LOAD_PERCENT, getTime(), ridersInside * 100 / capacity);
+                }
+                return config.waitOnBoardSeconds();
             }
 
-            case ERROR -> {
+            default -> {
                 abort("Elevator is in error state.");
+                return 0;
             }
         }
     }
 
+    /**
+     * Generate two random floor requests (outside elevator).
+     */
+    private void generateRandomRequests() {
+        int floorIndex0 = random.nextInt(currentFloor, floors.size() - 1);
+        int floorIndex1 = random.nextInt(0, currentFloor);
+
+        if (floorIndex0 != currentFloor) {
+            floors.get(floorIndex0).setUpRequested(true);
+            logger.verbose("Elevator #%d: new random request, floor #%d, up.",
+                id, floorIndex0);
+            trace(TraceWriter.EventType.HALL_CALL, floorIndex0, Direction.UP.ordinal(), 0, 0);
+        }
+
+        if (floorIndex1 != currentFloor) {
+            floors.get(floorIndex1).setDownRequested(true);
+            logger.verbose("Elevator #%d: new random request, floor #%d, down.",
+                id, floorIndex1);
+            trace(TraceWriter.EventType.HALL_CALL, floorIndex1, Direction.DOWN.ordinal(), 0, 0);
+        }
+    }
+
     @Override
     public void onTickDone(Reason reason) {
-        Logger.loggingMutex.lock();
+        logger.loggingMutex.lock();
 
-        Logger.info("Elevator #%d finished (%s). Report: ", id, reason.getDescription());
+        logger.info("Elevator #%d finished (%s). Report: ", id, reason.getDescription());
 
         int requested = getRidersRequested();
         int served = getRidersServed();
 
-        Logger.info("\tElevator #%d: ", id);
-        Logger.info("\t\t     Riders requested: %d", requested);
-        Logger.info("\t\t        Riders served: %d", served);
-        Logger.info("\t\t Riders not picked up: %d", requested - served);
-        Logger.info("\t\t   Average serve time: %.2f seconds", (float) config.runningSeconds() / served);
-
-        Logger.loggingMutex.unlock();
+        logger.info("\tElevator #%d: ", id);
+        logger.info("\t\t     Riders requested: %d", requested);
+        logger.info("\t\t        Riders served: %d", served);
+        logger.info("\t\t Riders not picked up: %d", requested - served);
+        logger.info("\t\t   Average serve time: %.2f seconds", (float) config.runningSeconds() / served);
+        logger.info("\t\t            Wait time: p50 %d, p90 %d, p99 %d, max %d seconds",
+            waitTimes.getPercentile(50), waitTimes.getPercentile(90),
+            waitTimes.getPercentile(99), waitTimes.getMax());
+        logger.info("\t\t            Ride time: p50 %d, p90 %d, p99 %d, max %d seconds",
+            rideTimes.getPercentile(50), rideTimes.getPercentile(90),
+            rideTimes.getPercentile(99), rideTimes.getMax());
+
+        logger.loggingMutex.unlock();
     }
 
     private void handleWaitingOnBoard() {
         // How many persons left?
+        int now = getTime();
         int left = floorsToVisitCount[currentFloor];
         floorsToVisitCount[currentFloor] = 0;
+        if (hasCarCall(currentFloor)) {
+            carCallWords[currentFloor >>> 6] &= ~(1L << currentFloor);
+            --carCallFloors;
+        }
+        if (left > 0) {
+            alightRiders(now);
+        }
         onRidersLeaved(left);
+        ++stops;
+        if (riderListener != null && left > 0) {
+            riderListener.onAlighted(id, currentFloor, left);
+        }
+
+        if (waitingRiders != null) {
+            boardWaitingRiders(now, left);
+            return;
+        }
 
         // How many persons want to enter the elevator?
-        int requested = config.randomRiderGenerator().call();
+        int requested = config.randomRiderGenerator().next(random);
 
         // How many available spaces in the elevator?
         int acceptable = capacity - ridersInside;
@@ -247,8 +510,9 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
         onRidersServed(served);
         onRidersRequested(requested);
 
-        Logger.verbose("Elevator #%d: on floor #%d, %d left, %d requested, %d served.",
+        logger.verbose("Elevator #%d: on floor #%d, %d left, %d requested, %d served.",
             id, currentFloor, left, requested, served);
+        trace(TraceWriter.EventType.BOARDING, currentFloor, left, requested, served);
 
         // New riders are requesting for their destinations.
         // Some guys may select an arbitrary floor regardless of the direction.
@@ -261,8 +525,96 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
                 floorIndex = random.nextInt(0, currentFloor);
             }
             onRequestVisit(floorIndex);
-            Logger.verbose("Elevator #%d: a rider requested to visit floor #%d.",
+            // onRidersServed already counted the new riders in.
+            boardRider(ridersInside - served + i, waitingSince != -1 ? waitingSince : now, now, floorIndex);
+            logger.verbose("Elevator #%d: a rider requested to visit floor #%d.",
                 id, floorIndex);
+            trace(TraceWriter.EventType.CAR_CALL, floorIndex, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Board the passengers waiting here, in arrival order and up to the capacity:
+     * those going our way, or both ways if we have no direction.
+     * Whoever is left keeps the hall call pressed for the next elevator.
+     * Every passenger counts as requested once, as it boards. The building counts those left waiting.
+     */
+    private void boardWaitingRiders(int now, int left) {
+        int waiting = 0;
+        int served = 0;
+
+        for (Direction boarding : HALL_CALL_DIRECTIONS) {
+            // Riders given to this elevator board whichever way it goes. They have room.
+            if (direction != Direction.IDLE && direction != boarding && !isBoardingAssignedRiders) {
+                continue;
+            }
+            waiting += waitingRiders.size(currentFloor, boarding);
+
+            int taken = waitingRiders.board(
+                id, currentFloor, boarding, capacity - ridersInside - served, boardingRiders
+            );
+            for (int i = 0; i < taken; i++) {
+                int floorIndex = WaitingRiders.destinationOf(boardingRiders[i]);
+                onRequestVisit(floorIndex);
+                boardRider(ridersInside + served + i, WaitingRiders.arrivalTimeOf(boardingRiders[i]), now, floorIndex);
+                if (riderListener != null) {
+                    riderListener.onBoarded(id, currentFloor, floorIndex);
+                }
+                logger.verbose("Elevator #%d: a rider requested to visit floor #%d.",
+                    id, floorIndex);
+                trace(TraceWriter.EventType.CAR_CALL, floorIndex, 0, 0, 0);
+            }
+            served += taken;
+            // No hall calls in destination dispatch.
+            if (isBoardingAssignedRiders) {
+                continue;
+            }
+
+            boolean isStillWaiting = waitingRiders.size(currentFloor, boarding) > 0;
+            if (board.setRequested(currentFloor, boarding, isStillWaiting) && isStillWaiting && scheduler != null) {
+                scheduler.signalParked();
+            }
+        }
+
+        // Counted as the report counts them: riders left behind count once they board, or at the end.
+        int requested = served;
+        onRidersServed(served);
+        onRidersRequested(requested);
+
+        logger.verbose("Elevator #%d: on floor #%d, %d left, %d requested, %d served, %d were waiting.",
+            id, currentFloor, left, requested, served, waiting);
+        trace(TraceWriter.EventType.BOARDING, currentFloor, left, requested, served);
+    }
+
+    /**
+     * Log a rider who just boarded.
+     *
+     * @param slot where the rider goes in {@link #ridersOnBoard}.
+     */
+    private void boardRider(int slot, int arrivalTime, int now, int destination) {
+        ridersOnBoard[slot] = passengers.add(arrivalTime, now, currentFloor, destination);
+        waitTimes.record(now - arrivalTime);
+        if (stats != null) {
+            stats.record(StreamingStats.Metric.WAIT_SECONDS, now, now - arrivalTime);
+        }
+    }
+
+    /**
+     * Log the riders getting off at the current floor, and drop them from {@link #ridersOnBoard}.
+     */
+    private void alightRiders(int now) {
+        int kept = 0;
+        for (int i = 0; i < ridersInside; i++) {
+            int passenger = ridersOnBoard[i];
+            if (passengers.getDestination(passenger) == currentFloor) {
+                passengers.setAlightingTime(passenger, now);
+                rideTimes.record(now - passengers.getBoardingTime(passenger));
+                if (stats != null) {
+                    stats.record(StreamingStats.Metric.RIDE_SECONDS, now, now - passengers.getBoardingTime(passenger));
+                }
+            } else {
+                ridersOnBoard[kept++] = passenger;
+            }
         }
     }
 
@@ -275,28 +627,33 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
                 destinationFloor = -1;
 
                 // Take off the request.
-                if (getDirection() == Direction.UP) {
-                    floor.setUpRequested(false);
-                } else {
-                    floor.setDownRequested(false);
+                // Without a direction, whichever request brought us here is served.
+                waitingSince = -1;
+                if (isTurning) {
+                    isTurning = false;
+                    setDirection(direction == Direction.UP ? Direction.DOWN : Direction.UP);
                 }
-
-                // Unlock both reentrant locks - as we do not know
-                // which one is locked in directionless case.
-                // Only to ensure that we do not hold any locks on it.
-                if (floor.tryLockUp()) {
-                    floor.unlockUp();
+                if (getDirection() != Direction.DOWN) {
+                    takeOffHallCall(currentFloor, Direction.UP);
+                }
+                if (getDirection() != Direction.UP) {
+                    takeOffHallCall(currentFloor, Direction.DOWN);
                 }
-                if (floor.tryLockDown()) {
-                    floor.unlockDown();
+
+                // Release whichever call we claimed here - we do not know
+                // which one in directionless case. Other elevators' claims stay.
+                floor.releaseClaims(id);
+                // Calls left here may now be free for the others.
+                if (scheduler != null) {
+                    scheduler.signalParked();
                 }
                 // Update direction if necessary.
                 if (currentFloor == 0) {
-                    Logger.verbose("Elevator #%d: reached bound. Changing direction.", id);
+                    logger.verbose("Elevator #%d: reached bound. Changing direction.", id);
                     setDirection(Direction.UP);
                 }
                 else if (currentFloor == floors.size() - 1) {
-                    Logger.verbose("Elevator #%d: reached bound. Changing direction.", id);
+                    logger.verbose("Elevator #%d: reached bound. Changing direction.", id);
                     setDirection(Direction.DOWN);
                 }
 
@@ -318,18 +675,7 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
         }
 
         // Otherwise, find a destination according to the direction.
-        destinationFloor = findAndLockNearestFloorIf(
-            (i) -> {
-                Floor floor = floors.get(i);
-                if (direction == Direction.UP) {
-                    return currentFloor <= i && floor.isUpRequested();
-                } else if (direction == Direction.DOWN) {
-                    return currentFloor >= i && floor.isDownRequested();
-                } else {
-                    return floor.isUpRequested() || floor.isDownRequested();
-                }
-            }
-        );
+        destinationFloor = findAndClaimNearestFloor();
 
         // Keep idle if no such floor.
         if (destinationFloor == -1) {
@@ -341,43 +687,146 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
     }
 
     /**
-     * Find and lock the nearest outside-requested floor, according to current direction.
+     * Take off the outside request, remembering since when its riders wait.
+     */
+    private void takeOffHallCall(int floor, Direction direction) {
+        int pressedTime = board.getPressedTime(floor, direction);
+        if (board.setRequested(floor, direction, false) && pressedTime != -1) {
+            waitingSince = waitingSince == -1 ? pressedTime : Math.min(waitingSince, pressedTime);
+        }
+    }
+
+    /**
+     * Find and claim the nearest floor to visit, according to current direction:
+     * a floor requested from inside, or an outside-requested floor in the same direction
+     * (either direction when idle). Skips to the next candidate a word of 64 floors at a time.
      *
-     * @param condition The condition to qualify the floor index.
      * @return The floor index. -1 if no such floor.
      */
-    private int findAndLockNearestFloorIf(Function<Integer, Boolean> condition) {
+    private int findAndClaimNearestFloor() {
+        // Nothing requested anywhere?
+        if (carCallFloors == 0 && !board.hasPendingCalls()) {
+            return -1;
+        }
+
+        int numFloors = floors.size();
         if (direction == Direction.UP || direction == Direction.IDLE) {
-            for (int i = currentFloor; i < floors.size(); ++i) {
-                Floor floor = floors.get(i);
+            for (int i = currentFloor; i < numFloors; ) {
+                int word = i >>> 6;
+                long candidates = candidateWord(word) & (-1L << i);
+                if (candidates == 0) {
+                    i = (word + 1) << 6;
+                    continue;
+                }
 
+                int floor = (word << 6) + Long.numberOfTrailingZeros(candidates);
+                if (floor >= numFloors) {
+                    break;
+                }
                 // There are visitors, or the floor is requested.
-                if (
-                    floorsToVisitCount[i] > 0
-                    || (condition.apply(i) && floor.tryLockUp())
-                ) {
-                    return i;
+                if (hasCarCall(floor) || tryClaimHallCall(floor, Direction.UP)) {
+                    return floor;
                 }
+                i = floor + 1;
             }
         }
         if (direction == Direction.DOWN || direction == Direction.IDLE) {
-            for (int i = currentFloor; i >= 0; --i) {
-                Floor floor = floors.get(i);
+            for (int i = currentFloor; i >= 0; ) {
+                int word = i >>> 6;
+                long candidates = candidateWord(word) & (-1L >>> (63 - (i & 63)));
+                if (candidates == 0) {
+                    i = (word << 6) - 1;
+                    continue;
+                }
 
+                int floor = (word << 6) + 63 - Long.numberOfLeadingZeros(candidates);
                 // There are visitors, or the floor is requested.
-                if (
-                    floorsToVisitCount[i] > 0
-                    || (condition.apply(i) && floor.tryLockDown())
-                ) {
-                    return i;
+                if (hasCarCall(floor) || tryClaimHallCall(floor, Direction.DOWN)) {
+                    return floor;
                 }
+                i = floor - 1;
+            }
+        }
+        // Nothing more this way. A call assigned to us the other way on is where we turn,
+        // as the dispatch strategy counted on. SCAN-like strategies turn wherever they run out.
+        if (direction != Direction.IDLE && !dispatchStrategy.isSelfClaiming()) {
+            return findAssignedTurn();
+        }
+        return -1;
+    }
+
+    /**
+     * @return the farthest floor ahead with a call the other way assigned to us, -1 if none.
+     */
+    private int findAssignedTurn() {
+        Direction opposite = direction == Direction.UP ? Direction.DOWN : Direction.UP;
+        int numFloors = floors.size();
+        for (int i = 0; i < numFloors; i++) {
+            int floor = direction == Direction.UP ? numFloors - 1 - i : i;
+            if (floor == currentFloor) {
+                break;
+            }
+            if (tryClaimRequested(floor, opposite)) {
+                isTurning = true;
+                return floor;
             }
         }
         return -1;
     }
 
+    private boolean hasCarCall(int floor) {
+        return (carCallWords[floor >>> 6] & (1L << floor)) != 0;
+    }
+
+    /**
+     * @return the floors of the word that may be worth a visit in the current direction.
+     */
+    private long candidateWord(int word) {
+        long candidates = carCallWords[word];
+        if (direction != Direction.DOWN) {
+            candidates |= board.wordsOf(Direction.UP).get(word);
+        }
+        if (direction != Direction.UP) {
+            candidates |= board.wordsOf(Direction.DOWN).get(word);
+        }
+        return candidates;
+    }
+
+    /**
+     * Claim the outside request of the floor in the current direction.
+     * When idle, either request will do, the one in the scanning direction first.
+     */
+    private boolean tryClaimHallCall(int floor, Direction scanning) {
+        if (direction != Direction.IDLE) {
+            return tryClaimRequested(floor, direction);
+        }
+        Direction opposite = scanning == Direction.UP ? Direction.DOWN : Direction.UP;
+        return tryClaimRequested(floor, scanning) || tryClaimRequested(floor, opposite);
+    }
+
+    /**
+     * @return true if the call is requested and ours: claimed now if the elevators claim on their own,
+     * otherwise only if the dispatch strategy assigned it to us.
+     */
+    private boolean tryClaimRequested(int floor, Direction direction) {
+        if (!board.isRequested(floor, direction)) {
+            return false;
+        }
+        // Nobody waiting could get in. Real passengers would still be waiting after the door closes.
+        if (waitingRiders != null && isFull()) {
+            return false;
+        }
+        if (dispatchStrategy.isSelfClaiming()) {
+            return board.tryClaim(floor, direction, id);
+        }
+        return board.getOwner(floor, direction) == id;
+    }
+
     public void setStatus(Status status) {
-        this.status = status;
+        if (this.status != status) {
+            this.status = status;
+            trace(TraceWriter.EventType.STATUS, currentFloor, direction.ordinal(), 0, 0);
+        }
     }
 
     public Status getStatus() {
@@ -392,6 +841,13 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
         return currentFloor;
     }
 
+    /**
+     * @return the floor the elevator is heading for, -1 if none.
+     */
+    public int getDestinationFloor() {
+        return destinationFloor;
+    }
+
     public void setCurrentFloor(int currentFloor) {
         this.currentFloor = currentFloor;
     }
@@ -409,11 +865,11 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
             abort("Elevator is trying to open door while moving.");
         }
         if (doorOpen) {
-            HardwareControl.openDoor(id);
-            Logger.verbose("Elevator #%d: Door opening.", id);
+            hardware.openDoor(id);
+            logger.verbose("Elevator #%d: Door opening.", id);
         } else {
-            HardwareControl.closeDoor(id);
-            Logger.verbose("Elevator #%d: Door closing. Elevator moving.", id);
+            hardware.closeDoor(id);
+            logger.verbose("Elevator #%d: Door closing. Elevator moving.", id);
         }
         isDoorOpen = doorOpen;
     }
@@ -426,6 +882,9 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
         if (moving && isDoorOpen()) {
             abort("Elevator is trying to move while door is open.");
         }
+        if (!moving && isMoving) {
+            hardware.stop(id);
+        }
         isMoving = moving;
     }
 
@@ -433,9 +892,9 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
         this.direction = newDirection;
 
         if (newDirection == Direction.UP) {
-            Logger.verbose("Elevator #%d: Elevator going up.", id);
+            logger.verbose("Elevator #%d: Elevator going up.", id);
         } else if (newDirection == Direction.DOWN) {
-            Logger.verbose("Elevator #%d: Elevator going down.", id);
+            logger.verbose("Elevator #%d: Elevator going down.", id);
         }
     }
 
@@ -468,9 +927,250 @@ public class Elevator implements Clock.OnTickListener, Clock.OnTickDoneListener
         this.ridersInside -= riders;
     }
 
+    /**
+     * Board the passengers of the building instead of making up random requests.
+     * Call before the elevator starts.
+     */
+    public void setWaitingRiders(BoardingQueues waitingRiders) {
+        this.waitingRiders = waitingRiders;
+        this.boardingRiders = new long[capacity];
+    }
+
+    /**
+     * @param group the elevators the strategy hands the calls between, this one included.
+     */
+    public void setDispatchStrategy(DispatchStrategy dispatchStrategy, List<Elevator> group) {
+        this.dispatchStrategy = dispatchStrategy;
+        this.dispatchGroup = group;
+    }
+
+    /**
+     * @param riderListener told as riders board and get off. Null to stop telling. Call before the elevator starts.
+     */
+    public void setRiderListener(RiderListener riderListener) {
+        this.riderListener = riderListener;
+    }
+
+    /**
+     * Board the riders waiting for this elevator whichever way it goes, and press no hall calls,
+     * as they were given to this elevator in particular. Call before the elevator starts.
+     */
+    void setBoardingAssignedRiders(boolean isBoardingAssignedRiders) {
+        this.isBoardingAssignedRiders = isBoardingAssignedRiders;
+    }
+
+    /**
+     * @param stats where the wait and ride times and the loads go as they happen. Call before the elevator starts.
+     */
+    public void setStreamingStats(StreamingStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * @return how often the door opened for riders.
+     */
+    public int getStops() {
+        return stops;
+    }
+
+    /**
+     * @param hardware where the door and motor commands go. Must not block, see {@link HardwareCommandQueue}.
+     */
+    public void setHardwareControl(HardwareControl hardware) {
+        this.hardware = hardware;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the number of floors in [from, to] or [to, from] requested from inside.
+     */
+    public int countCarCallsBetween(int from, int to) {
+        int low = Math.min(from, to);
+        int high = Math.max(from, to);
+        int count = 0;
+        for (int word = low >>> 6; word <= high >>> 6; word++) {
+            long bits = carCallWords[word];
+            if (word == low >>> 6) {
+                bits &= -1L << low;
+            }
+            if (word == high >>> 6) {
+                bits &= -1L >>> (63 - (high & 63));
+            }
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * @return the highest floor requested from inside if UP, the lowest if DOWN.
+     * -1 if none, or if IDLE.
+     */
+    public int getFarthestCarCall(Direction direction) {
+        if (carCallFloors == 0 || direction == Direction.IDLE) {
+            return -1;
+        }
+        if (direction == Direction.UP) {
+            for (int word = carCallWords.length - 1; word >= 0; word--) {
+                if (carCallWords[word] != 0) {
+                    return (word << 6) + 63 - Long.numberOfLeadingZeros(carCallWords[word]);
+                }
+            }
+        } else {
+            for (int word = 0; word < carCallWords.length; word++) {
+                if (carCallWords[word] != 0) {
+                    return (word << 6) + Long.numberOfTrailingZeros(carCallWords[word]);
+                }
+            }
+        }
+        return -1;
+    }
+
+    public PassengerLog getPassengers() {
+        return passengers;
+    }
+
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    public LatencyHistogram getRideTimes() {
+        return rideTimes;
+    }
+
+    /**
+     * Publish the seconds spent moving, at the door, boarding and idle,
+     * and the floor and riders inside versus capacity, under "elevator.&lt;id&gt;.".
+     * Call before the elevator starts.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        String prefix = "elevator." + id + ".";
+        LongAdder moving = metrics.counter(prefix + "seconds.moving");
+        LongAdder door = metrics.counter(prefix + "seconds.door");
+        LongAdder boarding = metrics.counter(prefix + "seconds.boarding");
+
+        // Idle phases take no time of their own. Idle is whatever is left.
+        phaseSeconds = new LongAdder[Status.values().length];
+        phaseSeconds[Status.IDLE.ordinal()] = new LongAdder();
+        phaseSeconds[Status.MOVING_UP.ordinal()] = moving;
+        phaseSeconds[Status.MOVING_DOWN.ordinal()] = moving;
+        phaseSeconds[Status.OPENING_DOOR.ordinal()] = door;
+        phaseSeconds[Status.CLOSING_DOOR.ordinal()] = door;
+        phaseSeconds[Status.WAITING_BOARDING.ordinal()] = boarding;
+        phaseSeconds[Status.ERROR.ordinal()] = new LongAdder();
+
+        // Read from another thread. A slightly stale value is fine.
+        metrics.gauge(prefix + "seconds.idle", () ->
+            Math.max(getTime() - moving.sum() - door.sum() - boarding.sum(), 0)
+        );
+        metrics.gauge(prefix + "floor", () -> currentFloor);
+        metrics.gauge(prefix + "ridersInside", () -> ridersInside);
+        metrics.gauge(prefix + "capacity", () -> capacity);
+    }
+
+    /**
+     * Write everything the elevator goes on from: position, status, load, car calls, the riders inside,
+     * histograms and random stream. Not the riders who left, nor the metrics. Call while not running.
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(currentFloor);
+        out.writeInt(destinationFloor);
+        out.writeBoolean(isTurning);
+        out.writeByte(status.ordinal());
+        out.writeByte(direction.ordinal());
+        out.writeBoolean(isDoorOpen);
+        out.writeBoolean(isMoving);
+        out.writeInt(ridersServed);
+        out.writeInt(ridersRequested);
+        out.writeInt(ridersInside);
+        out.writeInt(randomRequestCounter);
+        out.writeInt(phaseTicksRemaining);
+        out.writeInt(waitingSince);
+        out.writeInt(stops);
+
+        for (int count : floorsToVisitCount) {
+            out.writeInt(count);
+        }
+        // Pressed buttons stop the car without anybody inside for them.
+        for (long word : carCallWords) {
+            out.writeLong(word);
+        }
+        for (int i = 0; i < ridersInside; i++) {
+            int passenger = ridersOnBoard[i];
+            out.writeInt(passengers.getArrivalTime(passenger));
+            out.writeInt(passengers.getBoardingTime(passenger));
+            out.writeInt(passengers.getOrigin(passenger));
+            out.writeInt(passengers.getDestination(passenger));
+        }
+
+        waitTimes.writeState(out);
+        rideTimes.writeState(out);
+        random.writeState(out);
+    }
+
+    /**
+     * Replace the state with the one written by {@link #writeState}, of an elevator of the same building.
+     * Call before the elevator starts.
+     */
+    void readState(DataInput in) throws IOException {
+        currentFloor = in.readInt();
+        destinationFloor = in.readInt();
+        isTurning = in.readBoolean();
+        status = Status.values()[in.readByte()];
+        direction = Direction.values()[in.readByte()];
+        isDoorOpen = in.readBoolean();
+        isMoving = in.readBoolean();
+        ridersServed = in.readInt();
+        ridersRequested = in.readInt();
+        ridersInside = in.readInt();
+        randomRequestCounter = in.readInt();
+        phaseTicksRemaining = in.readInt();
+        waitingSince = in.readInt();
+        stops = in.readInt();
+
+        for (int floor = 0; floor < floorsToVisitCount.length; floor++) {
+            floorsToVisitCount[floor] = in.readInt();
+        }
+        carCallFloors = 0;
+        for (int word = 0; word < carCallWords.length; word++) {
+            carCallWords[word] = in.readLong();
+            carCallFloors += Long.bitCount(carCallWords[word]);
+        }
+        // The riders inside start a fresh log.
+        for (int i = 0; i < ridersInside; i++) {
+            int arrivalTime = in.readInt();
+            int boardingTime = in.readInt();
+            int origin = in.readInt();
+            ridersOnBoard[i] = passengers.add(arrivalTime, boardingTime, origin, in.readInt());
+        }
+
+        waitTimes.readState(in);
+        rideTimes.readState(in);
+        random.readState(in);
+    }
+
+    public void setTraceWriter(TraceWriter trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @return the current simulated second.
+     */
+    public int getTime() {
+        return scheduler != null ? scheduler.getTime() : clock.getTick();
+    }
+
+    private void trace(TraceWriter.EventType type, int floor, int value0, int value1, int value2) {
+        if (trace != null) {
+            trace.write(getTime(), id, type, status.ordinal(), floor, value0, value1, value2);
+        }
+    }
+
     private void abort(String reason) {
-        HardwareControl.abort(id);
-        Logger.error("Severe error: %s", reason);
+        hardware.abort(id);
+        logger.error("Severe error: %s", reason);
         while (true) {
             System.exit(Errors.ERROR_CODE_INVALID_STATUS);
         }
@@ -7,38 +7,392 @@
 package elevator;
 
 import elevator.simulate.Clock;
+import elevator.simulate.EventScheduler;
 import elevator.simulate.Logger;
+import elevator.simulate.FilePassengerSource;
+import elevator.simulate.MetricsRegistry;
+import elevator.simulate.PassengerSource;
+import elevator.simulate.StreamingStats;
+import elevator.simulate.TrafficGenerator;
+import elevator.simulate.TraceWriter;
+import elevator.simulate.UniformRandom;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class ElevatorService {
     protected ArrayList<Elevator> elevators = new ArrayList<>();
     protected int numElevators;
     protected int elevatorCapacity;
+    protected SimulationConfig config;
 
-    public ElevatorService(List<Floor> floors, int numElevators, int elevatorCapacity, SimulationConfig config) {
+    // Decides which elevator serves which hall call.
+    protected DispatchStrategy dispatchStrategy;
+
+    // Shared by all elevators in event mode. Null otherwise.
+    protected EventScheduler scheduler;
+
+    protected Logger logger;
+
+    protected final HallCallBoard board;
+
+    // The passengers of the building. Null if each elevator makes up random requests.
+    protected BuildingTraffic traffic;
+
+    // The passengers as agents of their own, instead of the traffic. Null if not.
+    protected AgentPopulation agents;
+
+    // Numbers by window as they happen. Null if not taken.
+    protected StreamingStats stats;
+
+    // Set once the elevators have their first events, by starting or by restoring a snapshot.
+    protected boolean isStarted;
+
+    public ElevatorService(
+        HallCallBoard board, int numElevators, int elevatorCapacity, SimulationConfig config, Logger logger
+    ) {
         this.numElevators = numElevators;
         this.elevatorCapacity = elevatorCapacity;
+        this.config = config;
+        this.logger = logger;
+        this.board = board;
+
+        // One clock for all elevators, or null to give each elevator its own.
+        Clock sharedClock = null;
+
+        if (config.clockMode() == SimulationConfig.ClockMode.EVENT) {
+            scheduler = new EventScheduler(logger);
+        } else if (config.clockMode() == SimulationConfig.ClockMode.SHARED) {
+            sharedClock = new Clock(config.clockWorkerThreads(), logger);
+            sharedClock.setPacing(config.pacing());
+        }
+
+        // Each elevator draws from its own stream, split from the simulation seed.
+        UniformRandom random = new UniformRandom(config.seed());
 
         for (int i = 0; i < numElevators; i++) {
-            Clock clock = new Clock();
+            if (scheduler != null) {
+                elevators.add(
+                    new Elevator(i, elevatorCapacity, scheduler, config, board, random.split(), logger)
+                );
+                continue;
+            }
+            Clock clock = sharedClock;
+            if (clock == null) {
+                clock = new Clock(1, logger);
+                clock.setPacing(config.pacing());
+            }
             elevators.add(
-                new Elevator(i, elevatorCapacity, clock, config, floors)
+                new Elevator(i, elevatorCapacity, clock, config, board, random.split(), logger)
+            );
+        }
+
+        PassengerSource passengers = newPassengerSource(board, random);
+        if (passengers != null) {
+            WaitingRiders waitingRiders = new WaitingRiders(board.getNumFloors());
+            traffic = new BuildingTraffic(passengers, waitingRiders, board, logger);
+            for (Elevator elevator : elevators) {
+                elevator.setWaitingRiders(waitingRiders);
+            }
+            if (scheduler != null) {
+                traffic.attachTo(scheduler);
+            } else if (!elevators.isEmpty()) {
+                // With one clock per elevator, the first one drives the building.
+                traffic.attachTo(elevators.get(0).clock);
+            }
+        }
+
+        // Calls remember when they were pressed, for the wait times.
+        board.setTimeSource(this::getTime);
+
+        dispatchStrategy = DispatchStrategy.of(config.dispatch(), config);
+        List<Elevator> group = Collections.unmodifiableList(elevators);
+        for (Elevator elevator : elevators) {
+            elevator.setDispatchStrategy(dispatchStrategy, group);
+        }
+        if (dispatchStrategy instanceof DestinationDispatchStrategy destinationDispatch) {
+            if (traffic == null) {
+                throw new IllegalArgumentException("Destination dispatch needs passengers, from a traffic profile or a file.");
+            }
+            destinationDispatch.attach(elevators, board.getNumFloors());
+            traffic.setDestinationDispatch(destinationDispatch);
+        }
+        if (!dispatchStrategy.isSelfClaiming()) {
+            board.setOnHallCallListener(
+                (floor, direction) -> dispatchStrategy.onHallCall(floor, direction, group, board)
+            );
+        }
+    }
+
+    /**
+     * @return the passengers of the building: replayed from the file, or drawn from the profile.
+     * Null if neither is configured.
+     */
+    private PassengerSource newPassengerSource(HallCallBoard board, UniformRandom random) {
+        if (config.passengerFile() != null) {
+            try {
+                return new FilePassengerSource(config.passengerFile());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open " + config.passengerFile(), e);
+            }
+        }
+        if (config.trafficProfile() != null) {
+            // Drawn after the elevators' streams, so that those stay the same with or without traffic.
+            return new TrafficGenerator(config.trafficProfile(), board.getNumFloors(), random.split());
+        }
+        return null;
+    }
+
+    /**
+     * @return the current simulated second.
+     * With one clock per elevator, the clock of the first elevator.
+     */
+    public int getTime() {
+        if (scheduler != null) {
+            return scheduler.getTime();
+        }
+        if (elevators.isEmpty()) {
+            return 0;
+        }
+        return elevators.get(0).getTime();
+    }
+
+    /**
+     * Let the passengers of the building be agents, see {@link AgentPopulation}. Call before starting.
+     * The config must have no traffic profile or file of its own.
+     */
+    public void setAgents(AgentPopulation agents) {
+        if (traffic != null) {
+            throw new IllegalStateException("The config brings its own passengers.");
+        }
+        this.agents = agents;
+        agents.attach(board, elevators, this::getTime);
+        if (scheduler != null) {
+            agents.attachTo(scheduler);
+        } else if (!elevators.isEmpty()) {
+            // With one clock per elevator, the first one drives the building.
+            agents.attachTo(elevators.get(0).clock);
+        }
+    }
+
+    /**
+     * @param hardware where all elevators send their commands. Call before starting.
+     */
+    public void setHardwareControl(HardwareControl hardware) {
+        for (Elevator elevator : elevators) {
+            elevator.setHardwareControl(hardware);
+        }
+    }
+
+    /**
+     * @param trace where all elevators write their events. Null to stop tracing.
+     */
+    public void setTraceWriter(TraceWriter trace) {
+        for (Elevator elevator : elevators) {
+            elevator.setTraceWriter(trace);
+        }
+    }
+
+    /**
+     * Publish the elevators, clocks or scheduler, and the outstanding hall calls of every floor.
+     * Call before starting.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        for (Elevator elevator : elevators) {
+            elevator.setMetrics(metrics);
+        }
+
+        if (scheduler != null) {
+            scheduler.setMetrics(metrics);
+        } else if (config.clockMode() == SimulationConfig.ClockMode.SHARED) {
+            if (!elevators.isEmpty()) {
+                elevators.get(0).clock.setMetrics(metrics, "clock.");
+            }
+        } else {
+            for (Elevator elevator : elevators) {
+                elevator.clock.setMetrics(metrics, "clock." + elevator.getId() + ".");
+            }
+        }
+
+        metrics.gauge("board.pendingCalls", board::getPendingCalls);
+        if (traffic != null) {
+            metrics.gauge("building.arrivals", traffic::getArrivals);
+            metrics.gauge("building.waitingRiders", traffic::getWaiting);
+        }
+        for (int i = 0; i < board.getNumFloors(); i++) {
+            int floor = i;
+            metrics.gauge("floor." + floor + ".hallCalls", () ->
+                (board.isRequested(floor, Elevator.Direction.UP) ? 1 : 0)
+                    + (board.isRequested(floor, Elevator.Direction.DOWN) ? 1 : 0)
             );
         }
     }
 
+    /**
+     * Take the numbers of the run as they happen, see {@link StreamingStats}. Call before starting.
+     */
+    public void setStreamingStats(StreamingStats stats) {
+        this.stats = stats;
+        for (Elevator elevator : elevators) {
+            elevator.setStreamingStats(stats);
+        }
+        if (scheduler != null) {
+            stats.attachTo(scheduler);
+        } else if (!elevators.isEmpty()) {
+            stats.attachTo(elevators.get(0).clock);
+        }
+        stats.setHallCalls(board::getPendingCalls);
+        board.setOnPendingCallsListener(stats::onHallCallsChanged);
+    }
+
+    /**
+     * @return the passengers of the building, or null if each elevator makes up random requests.
+     */
+    public BuildingTraffic getTraffic() {
+        return traffic;
+    }
+
+    /**
+     * @return the passenger agents, or null if none.
+     */
+    public AgentPopulation getAgents() {
+        return agents;
+    }
+
+    /**
+     * @return the passengers of the building not on a car yet.
+     */
+    public int getWaiting() {
+        if (traffic != null) {
+            return traffic.getWaiting();
+        }
+        return agents != null ? agents.getWaiting() : 0;
+    }
+
+    public HallCallBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * @return the clocks driving the elevators: one if shared, one per elevator otherwise, none in event mode.
+     */
+    public List<Clock> getClocks() {
+        List<Clock> clocks = new ArrayList<>();
+        for (Elevator elevator : elevators) {
+            if (elevator.clock != null && !clocks.contains(elevator.clock)) {
+                clocks.add(elevator.clock);
+            }
+        }
+        return clocks;
+    }
+
     public ArrayList<Elevator> getElevators() {
         return new ArrayList<>(elevators);
     }
 
+    /**
+     * Start all elevators.
+     * In event mode, this blocks until the simulation is complete.
+     */
     public void start() {
+        startElevators();
+        if (scheduler != null && !scheduler.run(config.runningSeconds())) {
+            logger.error("Event scheduler failed to start.");
+        }
+    }
+
+    /**
+     * Run the first seconds and stop there, without the reports. Event mode only.
+     * {@link #start()} goes on from there.
+     */
+    public void runUntil(int seconds) {
+        requireEventMode();
+        startElevators();
+        if (!scheduler.runUntil(seconds)) {
+            logger.error("Event scheduler stopped before second %d.", seconds);
+        }
+    }
+
+    private void startElevators() {
+        if (isStarted) {
+            return;
+        }
+        isStarted = true;
         for (Elevator elevator : elevators) {
             elevator.startService();
         }
     }
 
+    /**
+     * Write the state of the whole building: calls, elevators, waiting passengers and pending events.
+     * Event mode only, while not running.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        requireSnapshots();
+        board.writeState(out);
+        for (Elevator elevator : elevators) {
+            elevator.writeState(out);
+        }
+        // The elevators by id, the building after them.
+        scheduler.writeState(out, listener -> listener == traffic ? elevators.size() : ((Elevator) listener).getId());
+        out.writeBoolean(traffic != null);
+        if (traffic != null) {
+            traffic.writeState(out);
+        }
+    }
+
+    /**
+     * Go on from the state written by {@link #writeState}, of a building of the same size. Call before starting.
+     * The config may differ, e.g. another dispatch strategy or running time for a what-if run.
+     * The passengers come from this config, skipped up to the time of the snapshot.
+     */
+    public void readState(DataInput in) throws IOException {
+        requireSnapshots();
+        board.readState(in);
+        for (Elevator elevator : elevators) {
+            elevator.readState(in);
+        }
+        scheduler.readState(in, id -> id == elevators.size() ? traffic : elevators.get(id));
+        if (in.readBoolean() != (traffic != null)) {
+            throw new IllegalArgumentException("The snapshot and the config differ in passenger traffic.");
+        }
+        if (traffic != null) {
+            traffic.readState(in, scheduler.getTime());
+        }
+        isStarted = true;
+
+        // A group controller assigns calls as they are pressed: tell it about those pressed before.
+        board.announceUnclaimedCalls();
+    }
+
+    private void requireEventMode() {
+        if (scheduler == null) {
+            throw new IllegalStateException("Only the event clock mode can run part-way and take snapshots.");
+        }
+    }
+
+    private void requireSnapshots() {
+        requireEventMode();
+        if (dispatchStrategy instanceof DestinationDispatchStrategy) {
+            throw new IllegalStateException("Snapshots do not cover destination dispatch.");
+        }
+        if (agents != null) {
+            throw new IllegalStateException("Snapshots do not cover passenger agents.");
+        }
+        if (stats != null) {
+            throw new IllegalStateException("Snapshots do not cover streaming statistics.");
+        }
+    }
+
+    public DispatchStrategy getDispatchStrategy() {
+        return dispatchStrategy;
+    }
+
     public void waitForStop() {
         for (Elevator elevator : elevators) {
             elevator.waitForStop();
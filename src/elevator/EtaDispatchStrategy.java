@@ -0,0 +1,70 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+/**
+ * Group controller assigning every call to the elevator with room and the lowest estimated time to arrival.
+ * The estimate follows the elevator along its current run: straight there if the call is ahead
+ * in the same direction, otherwise out to its farthest stop and back. Every stop on the way,
+ * and a full elevator, cost extra.
+ */
+public class EtaDispatchStrategy extends CostDispatchStrategy {
+    private final SimulationConfig config;
+
+    public EtaDispatchStrategy(SimulationConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    protected int costOf(Elevator elevator, int floor, Elevator.Direction direction) {
+        return estimateSeconds(elevator, floor, direction);
+    }
+
+    @Override
+    protected int handOverMargin() {
+        // A stop's worth sooner at least.
+        return config.openDoorSeconds() + config.waitOnBoardSeconds() + config.closeDoorSeconds();
+    }
+
+    /**
+     * @return the estimated seconds until the elevator opens its door at the floor for the call.
+     * Reads the elevator without synchronization; a slightly stale estimate is fine.
+     */
+    public int estimateSeconds(Elevator elevator, int floor, Elevator.Direction direction) {
+        int current = elevator.getCurrentFloor();
+        Elevator.Direction heading = elevator.getDirection();
+
+        boolean isOnTheWay = heading == Elevator.Direction.IDLE
+            || (heading == Elevator.Direction.UP && floor >= current && direction == Elevator.Direction.UP)
+            || (heading == Elevator.Direction.DOWN && floor <= current && direction == Elevator.Direction.DOWN);
+
+        int floorsToGo;
+        int stops;
+        if (isOnTheWay) {
+            floorsToGo = Math.abs(floor - current);
+            stops = elevator.countCarCallsBetween(current, floor);
+        } else {
+            // Finish the current run first, then come back.
+            int turn = elevator.getFarthestCarCall(heading);
+            if (turn == -1) {
+                turn = current;
+            }
+            floorsToGo = Math.abs(turn - current) + Math.abs(turn - floor);
+            stops = elevator.countCarCallsBetween(current, turn);
+        }
+
+        int moveSeconds = Math.max(config.moveUpToNeighbourFloorSeconds(), config.moveDownToNeighbourFloorSeconds());
+        int stopSeconds = config.openDoorSeconds() + config.waitOnBoardSeconds() + config.closeDoorSeconds();
+
+        int seconds = floorsToGo * moveSeconds + stops * stopSeconds;
+        if (elevator.isFull()) {
+            // Nobody can board before someone leaves.
+            seconds += stopSeconds;
+        }
+        return seconds;
+    }
+}
@@ -0,0 +1,635 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import elevator.simulate.Clock;
+import elevator.simulate.LatencyHistogram;
+import elevator.simulate.Logger;
+import elevator.simulate.RandomStreams;
+import elevator.simulate.ScenarioRunner;
+import elevator.simulate.SimulationResult;
+import elevator.simulate.TraceWriter;
+import elevator.simulate.UniformRandom;
+
+import java.util.Arrays;
+
+/**
+ * The elevators of many same-sized buildings in parallel arrays instead of objects:
+ * one slot per car for its floor, status, direction, load and timers, and bit words for the calls.
+ * No clock, thread, random or list per car, so a campus of 100k cars fits in a small heap.
+ * <p>
+ * Runs the same phases as {@link Elevator} on a shared clock with one worker thread.
+ * Building b goes through exactly the statuses, calls and riders of an
+ * {@link elevator.simulate.ElevatorSimulator} with the seed {@link #getSeed(int) getSeed(b)}
+ * on a shared clock with one worker; the fleet demo checks its first buildings against one.
+ * Supports random requests and SCAN dispatch only.
+ * <p>
+ * Not thread-safe, but disjoint ranges of buildings may be advanced by different threads,
+ * see {@link elevator.simulate.CampusRunner}.
+ */
+public class Fleet {
+    private static final byte UP = (byte) Elevator.Direction.UP.ordinal();
+    private static final byte DOWN = (byte) Elevator.Direction.DOWN.ordinal();
+    private static final byte IDLE = (byte) Elevator.Direction.IDLE.ordinal();
+    private static final Elevator.Status[] STATUSES = Elevator.Status.values();
+
+    private final int numBuildings;
+    private final int numFloors;
+    private final int carsPerBuilding;
+    private final int capacity;
+    private final SimulationConfig config;
+
+    // Words of 64 floors, per car and per building.
+    private final int floorWords;
+    private final long[] seeds;
+
+    // Per car, indexed by building * carsPerBuilding + car.
+    private final int[] currentFloor;
+    private final int[] destinationFloor;
+    private final byte[] status;
+    private final byte[] direction;
+    private final int[] phaseTicksRemaining;
+    private final int[] randomRequestCounter;
+    private final int[] waitingSince;
+    private final int[] ridersServed;
+    private final int[] ridersRequested;
+    private final int[] ridersInside;
+    private final int[] carCallFloors;
+    private final RandomStreams random;
+
+    // Per car and floor: car * numFloors + floor, and car * floorWords + word.
+    private final int[] floorsToVisitCount;
+    private final long[] carCallWords;
+
+    // Per car and rider inside: car * capacity + slot.
+    private final int[] riderDestination;
+    private final int[] riderBoardingTime;
+
+    // Per building and floor: the requested bits, building * floorWords + word,
+    // and the owner + 1 (0 if unclaimed) and press time of each call, (building * numFloors + floor) * 2 + direction.
+    private final long[] upRequestedWords;
+    private final long[] downRequestedWords;
+    private final int[] hallCallOwners;
+    private final int[] hallCallPressedTimes;
+    private final int[] pendingCalls;
+
+    // Per building. The cars of a building share their histograms.
+    private final LatencyHistogram[] waitTimes;
+    private final LatencyHistogram[] rideTimes;
+
+    // Seconds advanced so far.
+    private int time;
+
+    // Binary event trace, with the car index as the elevator id. Null if not traced.
+    private TraceWriter trace;
+
+    public Fleet(int numBuildings, int numFloors, int carsPerBuilding, int capacity, SimulationConfig config) {
+        if (config.dispatch() != SimulationConfig.Dispatch.SCAN
+            || config.trafficProfile() != null || config.passengerFile() != null) {
+            throw new IllegalArgumentException("The fleet supports random requests and SCAN dispatch only.");
+        }
+        this.numBuildings = numBuildings;
+        this.numFloors = numFloors;
+        this.carsPerBuilding = carsPerBuilding;
+        this.capacity = capacity;
+        this.config = config;
+        this.floorWords = (numFloors + 63) / 64;
+
+        int cars = numBuildings * carsPerBuilding;
+        currentFloor = new int[cars];
+        destinationFloor = new int[cars];
+        status = new byte[cars];
+        direction = new byte[cars];
+        phaseTicksRemaining = new int[cars];
+        randomRequestCounter = new int[cars];
+        waitingSince = new int[cars];
+        ridersServed = new int[cars];
+        ridersRequested = new int[cars];
+        ridersInside = new int[cars];
+        carCallFloors = new int[cars];
+        floorsToVisitCount = new int[cars * numFloors];
+        carCallWords = new long[cars * floorWords];
+        riderDestination = new int[cars * capacity];
+        riderBoardingTime = new int[cars * capacity];
+
+        upRequestedWords = new long[numBuildings * floorWords];
+        downRequestedWords = new long[numBuildings * floorWords];
+        hallCallOwners = new int[numBuildings * numFloors * 2];
+        hallCallPressedTimes = new int[numBuildings * numFloors * 2];
+        pendingCalls = new int[numBuildings];
+        waitTimes = new LatencyHistogram[numBuildings];
+        rideTimes = new LatencyHistogram[numBuildings];
+
+        // Every building is seeded like a replication, and its cars split from that seed like the service does.
+        seeds = ScenarioRunner.seeds(config.seed(), numBuildings);
+        random = new RandomStreams(cars);
+        for (int building = 0; building < numBuildings; building++) {
+            UniformRandom buildingRandom = new UniformRandom(seeds[building]);
+            for (int car = building * carsPerBuilding; car < (building + 1) * carsPerBuilding; car++) {
+                random.set(car, buildingRandom.split());
+            }
+            waitTimes[building] = new LatencyHistogram();
+            rideTimes[building] = new LatencyHistogram();
+        }
+
+        Arrays.fill(destinationFloor, -1);
+        Arrays.fill(status, (byte) Elevator.Status.IDLE.ordinal());
+        Arrays.fill(direction, IDLE);
+        Arrays.fill(waitingSince, -1);
+    }
+
+    /**
+     * Run every building for the running time of the config, from where it is now.
+     */
+    public void run() {
+        advance(0, numBuildings, config.runningSeconds());
+        time += config.runningSeconds();
+    }
+
+    /**
+     * Advance a range of buildings, one building after the other, each by the given seconds.
+     * The buildings are independent, so the order makes no difference to the result.
+     * Does not move {@link #getTime()}: the caller does once all ranges are done, see {@link #addTime}.
+     */
+    public void advance(int fromBuilding, int toBuilding, int seconds) {
+        UniformRandom cursor = RandomStreams.newCursor();
+        for (int building = fromBuilding; building < toBuilding; building++) {
+            for (int now = time + 1; now <= time + seconds; now++) {
+                tick(building, now, cursor);
+            }
+        }
+    }
+
+    /**
+     * Move the time after every building was advanced by the seconds.
+     */
+    public void addTime(int seconds) {
+        time += seconds;
+    }
+
+    /**
+     * One tick of every car of a building, in order. Same as {@link Elevator#onTick}.
+     */
+    private void tick(int building, int now, UniformRandom cursor) {
+        int first = building * carsPerBuilding;
+        for (int car = first; car < first + carsPerBuilding; car++) {
+            random.load(car, cursor);
+
+            if (++randomRequestCounter[car] >= config.randomRequestTickGenerator().next(cursor)) {
+                generateRandomRequests(building, car, now, cursor);
+                randomRequestCounter[car] = 0;
+            }
+
+            // Never count below zero, or the idle ticks would eat up later phases.
+            if (phaseTicksRemaining[car] <= 0 || --phaseTicksRemaining[car] <= 0) {
+                phaseTicksRemaining[car] = runPhase(building, car, now, cursor);
+            }
+
+            random.store(car, cursor);
+        }
+    }
+
+    /**
+     * @return the seconds the phase takes.
+     */
+    private int runPhase(int building, int car, int now, UniformRandom cursor) {
+        switch (STATUSES[status[car]]) {
+            case IDLE -> {
+                handleIdle(building, car, now);
+                return 0;
+            }
+
+            case MOVING_UP -> {
+                if (currentFloor[car] == numFloors - 1) {
+                    throw new IllegalStateException("Car #" + car + " is moving to an invalid floor.");
+                }
+                ++currentFloor[car];
+                setStatus(car, Elevator.Status.IDLE, now);
+                return config.moveUpToNeighbourFloorSeconds();
+            }
+
+            case MOVING_DOWN -> {
+                if (currentFloor[car] == 0) {
+                    throw new IllegalStateException("Car #" + car + " is moving to an invalid floor.");
+                }
+                --currentFloor[car];
+                setStatus(car, Elevator.Status.IDLE, now);
+                return config.moveDownToNeighbourFloorSeconds();
+            }
+
+            case OPENING_DOOR -> {
+                setStatus(car, Elevator.Status.WAITING_BOARDING, now);
+                return config.openDoorSeconds();
+            }
+
+            case CLOSING_DOOR -> {
+                setStatus(car, Elevator.Status.IDLE, now);
+                return config.closeDoorSeconds();
+            }
+
+            case WAITING_BOARDING -> {
+                setStatus(car, Elevator.Status.CLOSING_DOOR, now);
+                handleWaitingOnBoard(building, car, now, cursor);
+                return config.waitOnBoardSeconds();
+            }
+
+            default -> throw new IllegalStateException("Car #" + car + " is in error state.");
+        }
+    }
+
+    private void generateRandomRequests(int building, int car, int now, UniformRandom cursor) {
+        int floor = currentFloor[car];
+        int floorIndex0 = cursor.nextInt(floor, numFloors - 1);
+        int floorIndex1 = cursor.nextInt(0, floor);
+
+        if (floorIndex0 != floor) {
+            setRequested(building, floorIndex0, UP, true, now);
+            trace(now, car, TraceWriter.EventType.HALL_CALL, floorIndex0, UP, 0, 0);
+        }
+        if (floorIndex1 != floor) {
+            setRequested(building, floorIndex1, DOWN, true, now);
+            trace(now, car, TraceWriter.EventType.HALL_CALL, floorIndex1, DOWN, 0, 0);
+        }
+    }
+
+    private void handleWaitingOnBoard(int building, int car, int now, UniformRandom cursor) {
+        int floor = currentFloor[car];
+        int left = floorsToVisitCount[car * numFloors + floor];
+        floorsToVisitCount[car * numFloors + floor] = 0;
+        if (left > 0) {
+            carCallWords[car * floorWords + (floor >>> 6)] &= ~(1L << floor);
+            --carCallFloors[car];
+            alightRiders(building, car, now);
+        }
+        ridersInside[car] -= left;
+
+        int requested = config.randomRiderGenerator().next(cursor);
+        int served = Math.min(requested, capacity - ridersInside[car]);
+        ridersServed[car] += served;
+        ridersInside[car] += served;
+        ridersRequested[car] += requested;
+        trace(now, car, TraceWriter.EventType.BOARDING, floor, left, requested, served);
+
+        int arrivalTime = waitingSince[car] != -1 ? waitingSince[car] : now;
+        for (int i = 0; i < served; i++) {
+            int floorIndex = direction[car] == UP
+                ? cursor.nextInt(floor, numFloors - 1)
+                : cursor.nextInt(0, floor);
+            onRequestVisit(car, floorIndex);
+
+            int slot = car * capacity + ridersInside[car] - served + i;
+            riderDestination[slot] = floorIndex;
+            riderBoardingTime[slot] = now;
+            waitTimes[building].record(now - arrivalTime);
+            trace(now, car, TraceWriter.EventType.CAR_CALL, floorIndex, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Record the riders getting off at the current floor, and close the gaps they leave.
+     */
+    private void alightRiders(int building, int car, int now) {
+        int first = car * capacity;
+        int kept = first;
+        for (int slot = first; slot < first + ridersInside[car]; slot++) {
+            if (riderDestination[slot] == currentFloor[car]) {
+                rideTimes[building].record(now - riderBoardingTime[slot]);
+            } else {
+                riderDestination[kept] = riderDestination[slot];
+                riderBoardingTime[kept] = riderBoardingTime[slot];
+                ++kept;
+            }
+        }
+    }
+
+    private void onRequestVisit(int car, int floor) {
+        if (floorsToVisitCount[car * numFloors + floor]++ == 0) {
+            carCallWords[car * floorWords + (floor >>> 6)] |= 1L << floor;
+            ++carCallFloors[car];
+        }
+    }
+
+    private void handleIdle(int building, int car, int now) {
+        if (destinationFloor[car] == -1) {
+            destinationFloor[car] = findAndClaimNearestFloor(building, car);
+            // Keep idle if no such floor.
+            if (destinationFloor[car] == -1) {
+                direction[car] = IDLE;
+                return;
+            }
+        }
+
+        int floor = currentFloor[car];
+        if (floor > destinationFloor[car]) {
+            direction[car] = DOWN;
+            setStatus(car, Elevator.Status.MOVING_DOWN, now);
+            return;
+        }
+        if (floor < destinationFloor[car]) {
+            direction[car] = UP;
+            setStatus(car, Elevator.Status.MOVING_UP, now);
+            return;
+        }
+
+        // Arrived. Without a direction, whichever call brought us here is served.
+        destinationFloor[car] = -1;
+        waitingSince[car] = -1;
+        if (direction[car] != DOWN) {
+            takeOffHallCall(building, car, floor, UP, now);
+        }
+        if (direction[car] != UP) {
+            takeOffHallCall(building, car, floor, DOWN, now);
+        }
+        int owner = car - building * carsPerBuilding;
+        release(building, floor, UP, owner);
+        release(building, floor, DOWN, owner);
+
+        if (floor == 0) {
+            direction[car] = UP;
+        } else if (floor == numFloors - 1) {
+            direction[car] = DOWN;
+        }
+        setStatus(car, Elevator.Status.OPENING_DOOR, now);
+    }
+
+    private void takeOffHallCall(int building, int car, int floor, byte direction, int now) {
+        int pressedTime = getPressedTime(building, floor, direction);
+        if (setRequested(building, floor, direction, false, now) && pressedTime != -1) {
+            waitingSince[car] = waitingSince[car] == -1 ? pressedTime : Math.min(waitingSince[car], pressedTime);
+        }
+    }
+
+    /**
+     * Same search as {@link Elevator}: the nearest car call, or claimable hall call, in the direction.
+     *
+     * @return The floor index. -1 if no such floor.
+     */
+    private int findAndClaimNearestFloor(int building, int car) {
+        if (carCallFloors[car] == 0 && pendingCalls[building] == 0) {
+            return -1;
+        }
+
+        int owner = car - building * carsPerBuilding;
+        byte heading = direction[car];
+        if (heading == UP || heading == IDLE) {
+            for (int i = currentFloor[car]; i < numFloors; ) {
+                int word = i >>> 6;
+                long candidates = candidateWord(building, car, word) & (-1L << i);
+                if (candidates == 0) {
+                    i = (word + 1) << 6;
+                    continue;
+                }
+
+                int floor = (word << 6) + Long.numberOfTrailingZeros(candidates);
+                if (floor >= numFloors) {
+                    break;
+                }
+                if (floorsToVisitCount[car * numFloors + floor] > 0 || tryClaimHallCall(building, car, owner, floor, UP)) {
+                    return floor;
+                }
+                i = floor + 1;
+            }
+        }
+        if (heading == DOWN || heading == IDLE) {
+            for (int i = currentFloor[car]; i >= 0; ) {
+                int word = i >>> 6;
+                long candidates = candidateWord(building, car, word) & (-1L >>> (63 - (i & 63)));
+                if (candidates == 0) {
+                    i = (word << 6) - 1;
+                    continue;
+                }
+
+                int floor = (word << 6) + 63 - Long.numberOfLeadingZeros(candidates);
+                if (floorsToVisitCount[car * numFloors + floor] > 0 || tryClaimHallCall(building, car, owner, floor, DOWN)) {
+                    return floor;
+                }
+                i = floor - 1;
+            }
+        }
+        return -1;
+    }
+
+    private long candidateWord(int building, int car, int word) {
+        long candidates = carCallWords[car * floorWords + word];
+        if (direction[car] != DOWN) {
+            candidates |= upRequestedWords[building * floorWords + word];
+        }
+        if (direction[car] != UP) {
+            candidates |= downRequestedWords[building * floorWords + word];
+        }
+        return candidates;
+    }
+
+    /**
+     * When idle, either call will do, the one in the scanning direction first.
+     */
+    private boolean tryClaimHallCall(int building, int car, int owner, int floor, byte scanning) {
+        if (direction[car] != IDLE) {
+            return tryClaimRequested(building, floor, direction[car], owner);
+        }
+        byte opposite = scanning == UP ? DOWN : UP;
+        return tryClaimRequested(building, floor, scanning, owner)
+            || tryClaimRequested(building, floor, opposite, owner);
+    }
+
+    private boolean tryClaimRequested(int building, int floor, byte direction, int owner) {
+        if (!isRequested(building, floor, direction)) {
+            return false;
+        }
+        int slot = slotOf(building, floor, direction);
+        if (hallCallOwners[slot] == 0) {
+            hallCallOwners[slot] = owner + 1;
+        }
+        return hallCallOwners[slot] == owner + 1;
+    }
+
+    private void release(int building, int floor, byte direction, int owner) {
+        int slot = slotOf(building, floor, direction);
+        if (hallCallOwners[slot] == owner + 1) {
+            hallCallOwners[slot] = 0;
+        }
+    }
+
+    private boolean isRequested(int building, int floor, byte direction) {
+        long[] words = direction == UP ? upRequestedWords : downRequestedWords;
+        return (words[building * floorWords + (floor >>> 6)] & (1L << floor)) != 0;
+    }
+
+    private int getPressedTime(int building, int floor, byte direction) {
+        return isRequested(building, floor, direction) ? hallCallPressedTimes[slotOf(building, floor, direction)] : -1;
+    }
+
+    /**
+     * Press or take off a call. Keeps the claim, if any.
+     *
+     * @return true if the call changed.
+     */
+    private boolean setRequested(int building, int floor, byte direction, boolean requested, int now) {
+        if (isRequested(building, floor, direction) == requested) {
+            return false;
+        }
+        long[] words = direction == UP ? upRequestedWords : downRequestedWords;
+        words[building * floorWords + (floor >>> 6)] ^= 1L << floor;
+        if (requested) {
+            hallCallPressedTimes[slotOf(building, floor, direction)] = now;
+            ++pendingCalls[building];
+        } else {
+            --pendingCalls[building];
+        }
+        return true;
+    }
+
+    private int slotOf(int building, int floor, byte direction) {
+        return (building * numFloors + floor) * 2 + direction;
+    }
+
+    private void setStatus(int car, Elevator.Status newStatus, int now) {
+        if (status[car] != newStatus.ordinal()) {
+            status[car] = (byte) newStatus.ordinal();
+            trace(now, car, TraceWriter.EventType.STATUS, currentFloor[car], direction[car], 0, 0);
+        }
+    }
+
+    private void trace(int now, int car, TraceWriter.EventType type, int floor, int value0, int value1, int value2) {
+        if (trace != null) {
+            trace.write(now, car, type, status[car], floor, value0, value1, value2);
+        }
+    }
+
+    /**
+     * @param trace where all cars write their events, the car index as the elevator id. Null to stop tracing.
+     */
+    public void setTraceWriter(TraceWriter trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @return the seed building b runs with: an {@link elevator.simulate.ElevatorSimulator}
+     * with this seed and a shared clock of one worker behaves the same.
+     */
+    public long getSeed(int building) {
+        return seeds[building];
+    }
+
+    public int getTime() {
+        return time;
+    }
+
+    public int getNumBuildings() {
+        return numBuildings;
+    }
+
+    public int getCarsPerBuilding() {
+        return carsPerBuilding;
+    }
+
+    public Elevator.Status getStatus(int car) {
+        return STATUSES[status[car]];
+    }
+
+    public int getCurrentFloor(int car) {
+        return currentFloor[car];
+    }
+
+    public int getRidersInside(int car) {
+        return ridersInside[car];
+    }
+
+    public int getRidersServed(int car) {
+        return ridersServed[car];
+    }
+
+    public int getRidersRequested(int car) {
+        return ridersRequested[car];
+    }
+
+    public LatencyHistogram getWaitTimes(int building) {
+        return waitTimes[building];
+    }
+
+    public LatencyHistogram getRideTimes(int building) {
+        return rideTimes[building];
+    }
+
+    /**
+     * Print the report of every car of a building, same as {@link Elevator} does when the time is up.
+     * The wait and ride times are kept per building, so they come once after the cars.
+     */
+    public void printReport(Logger logger, int building) {
+        logger.loggingMutex.lock();
+
+        for (int car = building * carsPerBuilding; car < (building + 1) * carsPerBuilding; car++) {
+            int requested = ridersRequested[car];
+            int served = ridersServed[car];
+            logger.info("Elevator #%d finished (%s). Report: ",
+                car, Clock.OnTickDoneListener.Reason.TIME_IS_UP.getDescription());
+            logger.info("\tElevator #%d: ", car);
+            logger.info("\t\t     Riders requested: %d", requested);
+            logger.info("\t\t        Riders served: %d", served);
+            logger.info("\t\t Riders not picked up: %d", requested - served);
+            logger.info("\t\t   Average serve time: %.2f seconds", (float) config.runningSeconds() / served);
+        }
+
+        LatencyHistogram wait = waitTimes[building];
+        LatencyHistogram ride = rideTimes[building];
+        logger.info("\tBuilding #%d: ", building);
+        logger.info("\t\t            Wait time: p50 %d, p90 %d, p99 %d, max %d seconds",
+            wait.getPercentile(50), wait.getPercentile(90), wait.getPercentile(99), wait.getMax());
+        logger.info("\t\t            Ride time: p50 %d, p90 %d, p99 %d, max %d seconds",
+            ride.getPercentile(50), ride.getPercentile(90), ride.getPercentile(99), ride.getMax());
+
+        logger.loggingMutex.unlock();
+    }
+
+    /**
+     * @return the numbers of one building, same as {@link SimulationResult#of} for its simulator.
+     */
+    public SimulationResult getResult(int building) {
+        return getResult(building, building + 1);
+    }
+
+    /**
+     * @return the numbers of all buildings together, as if they were one.
+     */
+    public SimulationResult getResult() {
+        return getResult(0, numBuildings);
+    }
+
+    private SimulationResult getResult(int fromBuilding, int toBuilding) {
+        int runningSeconds = config.runningSeconds();
+        long requested = 0;
+        long served = 0;
+        double serveSeconds = 0;
+        LatencyHistogram wait = new LatencyHistogram();
+        LatencyHistogram ride = new LatencyHistogram();
+
+        for (int building = fromBuilding; building < toBuilding; building++) {
+            for (int car = building * carsPerBuilding; car < (building + 1) * carsPerBuilding; car++) {
+                requested += ridersRequested[car];
+                served += ridersServed[car];
+                // Same as the per-elevator report. Nobody served counts as the whole run.
+                serveSeconds += (double) runningSeconds / Math.max(ridersServed[car], 1);
+            }
+            wait.merge(waitTimes[building]);
+            ride.merge(rideTimes[building]);
+        }
+
+        int cars = (toBuilding - fromBuilding) * carsPerBuilding;
+        return new SimulationResult(
+            (int) Math.min(requested, Integer.MAX_VALUE),
+            (int) Math.min(served, Integer.MAX_VALUE),
+            serveSeconds / cars,
+            served * 3600.0 / runningSeconds / cars,
+            wait.getPercentile(50),
+            wait.getPercentile(90),
+            wait.getPercentile(99),
+            wait.getMax(),
+            ride.getPercentile(50),
+            ride.getPercentile(99)
+        );
+    }
+}
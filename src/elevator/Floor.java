@@ -6,51 +6,52 @@
 
 package elevator;
 
-import java.util.concurrent.locks.ReentrantLock;
-
+/**
+ * One floor of the {@link HallCallBoard}.
+ * A claim is held by an elevator id, not by a thread, so any thread may release it.
+ */
 public class Floor {
-    boolean isUpRequested;
-    boolean isDownRequested;
-
-    private ReentrantLock upLock;
-    private ReentrantLock downLock;
+    private final int index;
+    private final HallCallBoard board;
 
-    public Floor() {
-        this.upLock = new ReentrantLock();
-        this.downLock = new ReentrantLock();
-        this.isDownRequested = false;
-        this.isUpRequested = false;
+    Floor(int index, HallCallBoard board) {
+        this.index = index;
+        this.board = board;
     }
 
-    public boolean tryLockUp() {
-        return upLock.tryLock();
+    public int getIndex() {
+        return index;
     }
 
-    public boolean tryLockDown() {
-        return downLock.tryLock();
+    public boolean tryClaimUp(int elevatorId) {
+        return board.tryClaim(index, Elevator.Direction.UP, elevatorId);
     }
 
-    public void unlockUp() {
-        upLock.unlock();
+    public boolean tryClaimDown(int elevatorId) {
+        return board.tryClaim(index, Elevator.Direction.DOWN, elevatorId);
     }
 
-    public void unlockDown() {
-        downLock.unlock();
+    /**
+     * Release the claims of the elevator in both directions, if it holds any.
+     */
+    public void releaseClaims(int elevatorId) {
+        board.release(index, Elevator.Direction.UP, elevatorId);
+        board.release(index, Elevator.Direction.DOWN, elevatorId);
     }
 
     public boolean isUpRequested() {
-        return isUpRequested;
+        return board.isRequested(index, Elevator.Direction.UP);
     }
 
     public void setUpRequested(boolean upRequested) {
-        isUpRequested = upRequested;
+        board.setRequested(index, Elevator.Direction.UP, upRequested);
     }
 
     public boolean isDownRequested() {
-        return isDownRequested;
+        return board.isRequested(index, Elevator.Direction.DOWN);
     }
 
     public void setDownRequested(boolean downRequested) {
-        isDownRequested = downRequested;
+        board.setRequested(index, Elevator.Direction.DOWN, downRequested);
     }
 }
@@ -0,0 +1,307 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+
+/**
+ * The outside requests (hall calls) of all floors, and which elevator claimed each of them.
+ * Lock-free: every floor and direction is one atomic slot, updated by compare-and-set,
+ * so any elevator thread can claim or release a call and see the others' changes.
+ */
+public class HallCallBoard {
+    // Slot layout: bit 0 is set if requested, bits 1-31 hold the owner id + 1 (0 if unclaimed),
+    // bits 32-63 the second the call was pressed, while requested.
+    private static final long REQUESTED = 1L;
+    private static final int OWNER_SHIFT = 1;
+    private static final long OWNER_BITS = 0xfffffffeL;
+    private static final int PRESSED_TIME_SHIFT = 32;
+
+    private final int numFloors;
+
+    // Indexed by floor * 2 + direction (0 up, 1 down).
+    private final AtomicLongArray slots;
+
+    // One bit per floor and direction, set while requested. Only a hint: the slots decide.
+    private final AtomicLongArray upRequestedWords;
+    private final AtomicLongArray downRequestedWords;
+
+    private final AtomicInteger pendingCalls = new AtomicInteger();
+    private final List<Floor> floors;
+
+    // The current simulated second, for the press times. Null to count from 0.
+    private volatile IntSupplier timeSource;
+
+    // Told about every call needing an elevator, e.g. by the group controller:
+    // newly pressed, or released while still requested. Null if nobody listens.
+    private volatile OnHallCallListener onHallCallListener;
+
+    // Told after every change of the calls pending, e.g. by the statistics. Null if nobody listens.
+    private volatile OnPendingCallsListener onPendingCallsListener;
+
+    public interface OnHallCallListener {
+        void onHallCall(int floor, Elevator.Direction direction);
+    }
+
+    public interface OnPendingCallsListener {
+        void onPendingCallsChanged();
+    }
+
+    public HallCallBoard(int numFloors) {
+        this.numFloors = numFloors;
+        this.slots = new AtomicLongArray(numFloors * 2);
+        this.upRequestedWords = new AtomicLongArray((numFloors + 63) / 64);
+        this.downRequestedWords = new AtomicLongArray((numFloors + 63) / 64);
+
+        List<Floor> floors = new ArrayList<>();
+        for (int i = 0; i < numFloors; i++) {
+            floors.add(new Floor(i, this));
+        }
+        this.floors = Collections.unmodifiableList(floors);
+    }
+
+    public List<Floor> getFloors() {
+        return floors;
+    }
+
+    public int getNumFloors() {
+        return numFloors;
+    }
+
+    /**
+     * @return true if any floor has a call in any direction.
+     */
+    public boolean hasPendingCalls() {
+        return pendingCalls.get() > 0;
+    }
+
+    public int getPendingCalls() {
+        return pendingCalls.get();
+    }
+
+    public void setOnHallCallListener(OnHallCallListener listener) {
+        this.onHallCallListener = listener;
+    }
+
+    public void setOnPendingCallsListener(OnPendingCallsListener listener) {
+        this.onPendingCallsListener = listener;
+    }
+
+    public void setTimeSource(IntSupplier timeSource) {
+        this.timeSource = timeSource;
+    }
+
+    public boolean isRequested(int floor, Elevator.Direction direction) {
+        return (slots.get(slotOf(floor, direction)) & REQUESTED) != 0;
+    }
+
+    /**
+     * @return the second the call was pressed, -1 if not requested.
+     */
+    public int getPressedTime(int floor, Elevator.Direction direction) {
+        long value = slots.get(slotOf(floor, direction));
+        return (value & REQUESTED) != 0 ? (int) (value >>> PRESSED_TIME_SHIFT) : -1;
+    }
+
+    /**
+     * Press or take off a call. Keeps the claim, if any.
+     *
+     * @return true if the call changed.
+     */
+    public boolean setRequested(int floor, Elevator.Direction direction, boolean requested) {
+        int slot = slotOf(floor, direction);
+        IntSupplier time = timeSource;
+        long pressed = requested && time != null ? (long) time.getAsInt() << PRESSED_TIME_SHIFT : 0;
+        while (true) {
+            long value = slots.get(slot);
+            if (((value & REQUESTED) != 0) == requested) {
+                return false;
+            }
+            long updated = requested ? value | REQUESTED | pressed : value & OWNER_BITS;
+            if (slots.compareAndSet(slot, value, updated)) {
+                break;
+            }
+        }
+
+        AtomicLongArray words = wordsOf(direction);
+        int word = floor >>> 6;
+        long bit = 1L << floor;
+        if (requested) {
+            pendingCalls.incrementAndGet();
+            words.accumulateAndGet(word, bit, (w, b) -> w | b);
+        } else {
+            pendingCalls.decrementAndGet();
+            words.accumulateAndGet(word, ~bit, (w, b) -> w & b);
+            // Pressed again in the meantime? Do not lose its bit.
+            if (isRequested(floor, direction)) {
+                words.accumulateAndGet(word, bit, (w, b) -> w | b);
+            }
+        }
+
+        OnPendingCallsListener pendingListener = onPendingCallsListener;
+        if (pendingListener != null) {
+            pendingListener.onPendingCallsChanged();
+        }
+        OnHallCallListener listener = onHallCallListener;
+        if (requested && listener != null) {
+            listener.onHallCall(floor, direction);
+        }
+        return true;
+    }
+
+    /**
+     * Claim a call, so that no other elevator goes for it.
+     * Works whether or not the call is requested.
+     *
+     * @return true if claimed now or already claimed by the same owner,
+     * false if another owner holds it.
+     */
+    public boolean tryClaim(int floor, Elevator.Direction direction, int owner) {
+        int slot = slotOf(floor, direction);
+        long claimed = (long) (owner + 1) << OWNER_SHIFT;
+        while (true) {
+            long value = slots.get(slot);
+            long holder = value & OWNER_BITS;
+            if (holder == claimed) {
+                return true;
+            }
+            if (holder != 0) {
+                return false;
+            }
+            // Only the call itself can change under us. Retry then.
+            if (slots.compareAndSet(slot, value, value | claimed)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Hand a call to an owner, taking it from whoever held it.
+     * Used by a group controller, which decides for the elevators.
+     */
+    public void assign(int floor, Elevator.Direction direction, int owner) {
+        int slot = slotOf(floor, direction);
+        long claimed = (long) (owner + 1) << OWNER_SHIFT;
+        while (true) {
+            long value = slots.get(slot);
+            if (slots.compareAndSet(slot, value, (value & ~OWNER_BITS) | claimed)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Release a claim. Does nothing if another owner holds it.
+     */
+    public void release(int floor, Elevator.Direction direction, int owner) {
+        int slot = slotOf(floor, direction);
+        long claimed = (long) (owner + 1) << OWNER_SHIFT;
+        while (true) {
+            long value = slots.get(slot);
+            if ((value & OWNER_BITS) != claimed) {
+                return;
+            }
+            if (slots.compareAndSet(slot, value, value & ~OWNER_BITS)) {
+                break;
+            }
+        }
+
+        // Still requested, e.g. reached in the other direction. It needs an elevator again.
+        OnHallCallListener listener = onHallCallListener;
+        if (listener != null && isAvailableTo(floor, direction, owner)) {
+            listener.onHallCall(floor, direction);
+        }
+    }
+
+    /**
+     * @return the id of the owner, or -1 if unclaimed.
+     */
+    public int getOwner(int floor, Elevator.Direction direction) {
+        return (int) ((slots.get(slotOf(floor, direction)) & OWNER_BITS) >>> OWNER_SHIFT) - 1;
+    }
+
+    /**
+     * @return true if requested and not claimed by anyone but the owner.
+     */
+    public boolean isAvailableTo(int floor, Elevator.Direction direction, int owner) {
+        long value = slots.get(slotOf(floor, direction));
+        long holder = value & OWNER_BITS;
+        return (value & REQUESTED) != 0
+            && (holder == 0 || holder == (long) (owner + 1) << OWNER_SHIFT);
+    }
+
+    /**
+     * Write every call: whether requested, by whom it is claimed and when it was pressed.
+     */
+    void writeState(DataOutput out) throws IOException {
+        for (int i = 0; i < slots.length(); i++) {
+            out.writeLong(slots.get(i));
+        }
+    }
+
+    /**
+     * Replace every call with those written by {@link #writeState}, without telling the listener.
+     * Call while no elevator runs.
+     */
+    void readState(DataInput in) throws IOException {
+        int pending = 0;
+        for (int word = 0; word < upRequestedWords.length(); word++) {
+            upRequestedWords.set(word, 0);
+            downRequestedWords.set(word, 0);
+        }
+        for (int i = 0; i < slots.length(); i++) {
+            long value = in.readLong();
+            slots.set(i, value);
+            if ((value & REQUESTED) != 0) {
+                int floor = i / 2;
+                AtomicLongArray words = i % 2 == 0 ? upRequestedWords : downRequestedWords;
+                words.set(floor >>> 6, words.get(floor >>> 6) | 1L << floor);
+                ++pending;
+            }
+        }
+        pendingCalls.set(pending);
+    }
+
+    /**
+     * Tell the listener about every call still needing an elevator, e.g. after a restore.
+     */
+    void announceUnclaimedCalls() {
+        OnHallCallListener listener = onHallCallListener;
+        if (listener == null) {
+            return;
+        }
+        for (int floor = 0; floor < numFloors; floor++) {
+            for (Elevator.Direction direction : List.of(Elevator.Direction.UP, Elevator.Direction.DOWN)) {
+                if (isRequested(floor, direction) && getOwner(floor, direction) == -1) {
+                    listener.onHallCall(floor, direction);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the words of the requested bits of a direction, 64 floors per word.
+     */
+    AtomicLongArray wordsOf(Elevator.Direction direction) {
+        return direction == Elevator.Direction.UP ? upRequestedWords : downRequestedWords;
+    }
+
+    private int slotOf(int floor, Elevator.Direction direction) {
+        if (direction == Elevator.Direction.IDLE) {
+            throw new IllegalArgumentException("A hall call is either up or down.");
+        }
+        return floor * 2 + (direction == Elevator.Direction.UP ? 0 : 1);
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import elevator.simulate.LatencyHistogram;
+import elevator.simulate.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends the commands of the elevators to a {@link HardwareDriver} without blocking their tick threads.
+ * A command is only queued for its car, and a sender thread hands the queue over to the driver as one batch.
+ * Each car has at most one batch in flight: whatever comes in while the car has not confirmed the last one
+ * waits for the next batch, coalesced with the commands before it.
+ * Moves in a row become one step of several floors, and repeated door or stop commands are dropped.
+ * <p>
+ * The commands reach a car in the order they were sent, so the interlocks of the elevator hold for the car too.
+ * The queue checks them once more on the commands themselves: the door never opens while moving,
+ * and the car never moves with the door open.
+ * An abort skips the queue and goes out on the caller's thread at once.
+ */
+public class HardwareCommandQueue implements HardwareControl {
+    private final HardwareDriver driver;
+    private final Logger logger;
+
+    // Everything below is guarded by this.
+    private final List<List<HardwareDriver.Step>> pending = new ArrayList<>();
+    private final long[] sequences;
+    private final long[] inFlightSince;
+    private final boolean[] isInFlight;
+    private final boolean[] isReady;
+    private final boolean[] isAborted;
+    private final ArrayDeque<Integer> readyCars = new ArrayDeque<>();
+
+    // The state of each car once all its commands are carried out.
+    private final boolean[] isCommandedMoving;
+    private final boolean[] isCommandedDoorOpen;
+
+    private long commandsReceived;
+    private long commandsCoalesced;
+    private long batchesSent;
+    private long batchesAcknowledged;
+    private int maxBacklog;
+    // Milliseconds from sending a batch to its acknowledgement.
+    private final LatencyHistogram ackMillis = new LatencyHistogram();
+
+    private Thread sender;
+    private boolean isClosing;
+
+    public HardwareCommandQueue(int numElevators, HardwareDriver driver, Logger logger) {
+        this.driver = driver;
+        this.logger = logger;
+        for (int i = 0; i < numElevators; i++) {
+            pending.add(new ArrayList<>());
+        }
+        this.sequences = new long[numElevators];
+        this.inFlightSince = new long[numElevators];
+        this.isInFlight = new boolean[numElevators];
+        this.isReady = new boolean[numElevators];
+        this.isAborted = new boolean[numElevators];
+        this.isCommandedMoving = new boolean[numElevators];
+        this.isCommandedDoorOpen = new boolean[numElevators];
+    }
+
+    /**
+     * Start sending. Commands sent before are kept for the first batches.
+     */
+    public synchronized void start() {
+        if (sender != null) {
+            return;
+        }
+        sender = new Thread(this::sendBatches, "hardware-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Send what is left and wait for the cars to confirm it, then stop sending.
+     *
+     * @return false if the cars did not confirm everything in time.
+     */
+    public boolean close(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            isClosing = true;
+            notifyAll();
+            try {
+                long left;
+                while (!isDrained() && (left = deadline - System.currentTimeMillis()) > 0) {
+                    wait(left);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return isDrained();
+        }
+    }
+
+    @Override
+    public void send(int elevatorId, Command command) {
+        if (command == Command.ABORT) {
+            abortNow(elevatorId);
+            return;
+        }
+
+        synchronized (this) {
+            if (isAborted[elevatorId]) {
+                return;
+            }
+            checkInterlock(elevatorId, command);
+            ++commandsReceived;
+
+            List<HardwareDriver.Step> steps = pending.get(elevatorId);
+            HardwareDriver.Step last = steps.isEmpty() ? null : steps.get(steps.size() - 1);
+            if (last != null && last.command() == command) {
+                ++commandsCoalesced;
+                if (command == Command.MOVE_UP || command == Command.MOVE_DOWN) {
+                    steps.set(steps.size() - 1, new HardwareDriver.Step(command, last.times() + 1));
+                }
+            } else {
+                steps.add(new HardwareDriver.Step(command, 1));
+                maxBacklog = Math.max(maxBacklog, steps.size());
+            }
+            markReady(elevatorId);
+        }
+    }
+
+    private void checkInterlock(int elevatorId, Command command) {
+        switch (command) {
+            case OPEN_DOOR -> {
+                if (isCommandedMoving[elevatorId]) {
+                    throw new IllegalStateException("Elevator #%d: door opening while moving.".formatted(elevatorId));
+                }
+                isCommandedDoorOpen[elevatorId] = true;
+            }
+            case CLOSE_DOOR -> isCommandedDoorOpen[elevatorId] = false;
+            case MOVE_UP, MOVE_DOWN -> {
+                if (isCommandedDoorOpen[elevatorId]) {
+                    throw new IllegalStateException("Elevator #%d: moving with the door open.".formatted(elevatorId));
+                }
+                isCommandedMoving[elevatorId] = true;
+            }
+            case STOP -> isCommandedMoving[elevatorId] = false;
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Drop what the car has not got yet and send the abort on this thread, ahead of any batch in flight.
+     */
+    private void abortNow(int elevatorId) {
+        HardwareDriver.Batch batch;
+        synchronized (this) {
+            isAborted[elevatorId] = true;
+            pending.get(elevatorId).clear();
+            batch = new HardwareDriver.Batch(
+                elevatorId, ++sequences[elevatorId], List.of(new HardwareDriver.Step(Command.ABORT, 1))
+            );
+            ++commandsReceived;
+            ++batchesSent;
+        }
+        driver.execute(batch, this::acknowledge);
+    }
+
+    private void markReady(int elevatorId) {
+        if (isInFlight[elevatorId] || isReady[elevatorId] || pending.get(elevatorId).isEmpty()) {
+            return;
+        }
+        isReady[elevatorId] = true;
+        readyCars.add(elevatorId);
+        notifyAll();
+    }
+
+    private void sendBatches() {
+        while (true) {
+            HardwareDriver.Batch batch;
+            synchronized (this) {
+                try {
+                    while (readyCars.isEmpty() && !(isClosing && isDrained())) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (readyCars.isEmpty()) {
+                    return;
+                }
+                int car = readyCars.poll();
+                isReady[car] = false;
+                List<HardwareDriver.Step> steps = pending.get(car);
+                batch = new HardwareDriver.Batch(car, ++sequences[car], List.copyOf(steps));
+                steps.clear();
+                isInFlight[car] = true;
+                inFlightSince[car] = System.nanoTime();
+                ++batchesSent;
+            }
+
+            try {
+                driver.execute(batch, this::acknowledge);
+            } catch (RuntimeException e) {
+                logger.error("Hardware: failed to send to elevator #%d: %s", batch.elevatorId(), e);
+                acknowledge(batch);
+            }
+        }
+    }
+
+    /**
+     * Called by the driver once a car confirmed a batch, from any thread.
+     */
+    private synchronized void acknowledge(HardwareDriver.Batch batch) {
+        int car = batch.elevatorId();
+        ++batchesAcknowledged;
+        if (!isInFlight[car] || batch.sequence() != sequences[car]) {
+            // An abort, or a batch overtaken by one.
+            notifyAll();
+            return;
+        }
+        isInFlight[car] = false;
+        ackMillis.record((int) ((System.nanoTime() - inFlightSince[car]) / 1_000_000));
+        markReady(car);
+        notifyAll();
+    }
+
+    private boolean isDrained() {
+        if (!readyCars.isEmpty()) {
+            return false;
+        }
+        for (int car = 0; car < isInFlight.length; car++) {
+            if (isInFlight[car] && !isAborted[car]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the commands of the car not confirmed yet: in flight, or waiting for the next batch.
+     */
+    public synchronized int getBacklog(int elevatorId) {
+        int backlog = 0;
+        for (HardwareDriver.Step step : pending.get(elevatorId)) {
+            backlog += step.times();
+        }
+        return backlog + (isInFlight[elevatorId] ? 1 : 0);
+    }
+
+    public synchronized long getCommandsReceived() {
+        return commandsReceived;
+    }
+
+    public synchronized long getCommandsCoalesced() {
+        return commandsCoalesced;
+    }
+
+    public synchronized long getBatchesSent() {
+        return batchesSent;
+    }
+
+    public synchronized void printReport(Logger logger) {
+        logger.loggingMutex.lock();
+
+        logger.info("Hardware commands. Report: ");
+        logger.info("\t            Commands: %d", commandsReceived);
+        logger.info("\t           Coalesced: %d", commandsCoalesced);
+        logger.info("\t             Batches: %d, %d confirmed", batchesSent, batchesAcknowledged);
+        logger.info("\t  Largest batch (steps): %d", maxBacklog);
+        logger.info("\t   Confirmed in: p50 %d, p99 %d, max %d milliseconds",
+            ackMillis.getPercentile(50), ackMillis.getPercentile(99), ackMillis.getMax());
+
+        logger.loggingMutex.unlock();
+    }
+}
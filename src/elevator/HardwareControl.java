@@ -7,30 +7,47 @@
 package elevator;
 
 /**
- * Stub for the elevator hardware.
+ * Where the elevators send their commands to the hardware.
+ * Called from the tick thread of each elevator, so implementations must not block,
+ * see {@link HardwareCommandQueue}, and must be thread-safe.
  */
-public class HardwareControl {
-    public static void openDoor(int elevatorId) {
-        // Stub
+public interface HardwareControl {
+    enum Command {
+        OPEN_DOOR,
+        CLOSE_DOOR,
+        MOVE_UP,
+        MOVE_DOWN,
+        STOP,
+        ABORT
     }
 
-    public static void closeDoor(int elevatorId) {
-        // Stub
+    // No hardware at all, e.g. in simulations.
+    HardwareControl NONE = (elevatorId, command) -> {
+    };
+
+    void send(int elevatorId, Command command);
+
+    default void openDoor(int elevatorId) {
+        send(elevatorId, Command.OPEN_DOOR);
+    }
+
+    default void closeDoor(int elevatorId) {
+        send(elevatorId, Command.CLOSE_DOOR);
     }
 
-    public static void moveUp(int elevatorId) {
-        // Stub
+    default void moveUp(int elevatorId) {
+        send(elevatorId, Command.MOVE_UP);
     }
 
-    public static void moveDown(int elevatorId) {
-        // Stub
+    default void moveDown(int elevatorId) {
+        send(elevatorId, Command.MOVE_DOWN);
     }
 
-    public static void stop(int elevatorId) {
-        // Stub
+    default void stop(int elevatorId) {
+        send(elevatorId, Command.STOP);
     }
 
-    public static void abort(int elevatorId) {
-        // Stub
+    default void abort(int elevatorId) {
+        send(elevatorId, Command.ABORT);
     }
 }
@@ -0,0 +1,36 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Talks to the controllers of the cars, one batch of commands at a time, see {@link HardwareCommandQueue}.
+ */
+public interface HardwareDriver {
+    /**
+     * A step of a batch: a command, and how many times in a row, e.g. three floors up.
+     */
+    record Step(HardwareControl.Command command, int times) {
+    }
+
+    /**
+     * Commands for one car, to be carried out in order.
+     *
+     * @param sequence counts the batches of the car from 1.
+     */
+    record Batch(int elevatorId, long sequence, List<Step> steps) {
+    }
+
+    /**
+     * Hand a batch to the car. Return as soon as it is sent,
+     * and call the listener once the car confirms it, from any thread.
+     * The next batch of the same car only comes after that.
+     */
+    void execute(Batch batch, Consumer<Batch> onAcknowledged);
+}
@@ -0,0 +1,23 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+/**
+ * Assigns every call to the elevator with room currently closest to its floor, whatever it is doing.
+ */
+public class NearestCarDispatchStrategy extends CostDispatchStrategy {
+    @Override
+    protected int costOf(Elevator elevator, int floor, Elevator.Direction direction) {
+        return Math.abs(elevator.getCurrentFloor() - floor);
+    }
+
+    @Override
+    protected int handOverMargin() {
+        // A floor closer at least.
+        return 0;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+/**
+ * What one passenger does, written as plain straight-line code, see {@link AgentPopulation}.
+ * The calls of {@link AgentPopulation.Passenger} that wait return once the simulated time has come.
+ */
+public interface PassengerAgent {
+    void live(AgentPopulation.Passenger me);
+
+    /**
+     * Rides to the destination, waiting as long as it takes.
+     */
+    static PassengerAgent patient(int destination) {
+        return me -> {
+            if (me.pressHallCall(destination)) {
+                me.awaitCar(-1);
+                me.awaitArrival();
+            }
+        };
+    }
+
+    /**
+     * Rides to the destination, pressing the hall call again every while.
+     * Takes the stairs instead if there is a queue of more than balkQueue on arrival,
+     * or once it waited giveUpSeconds; but only for up to stairFloors floors, else it waits on.
+     */
+    static PassengerAgent impatient(
+        int destination, int balkQueue, int rePressSeconds, int giveUpSeconds, int stairFloors
+    ) {
+        return me -> {
+            boolean isStairsAnOption = Math.abs(destination - me.getFloor()) <= stairFloors;
+            if (isStairsAnOption && me.countWaiting(destination) > balkQueue) {
+                me.takeStairs(destination);
+                return;
+            }
+            if (!me.pressHallCall(destination)) {
+                return;
+            }
+            int waited = 0;
+            while (!me.awaitCar(rePressSeconds)) {
+                waited += rePressSeconds;
+                if (isStairsAnOption && waited >= giveUpSeconds) {
+                    me.leaveQueue();
+                    me.takeStairs(destination);
+                    return;
+                }
+                me.rePress();
+            }
+            me.awaitArrival();
+        };
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import java.util.Arrays;
+
+/**
+ * Every rider of an elevator, one array per field instead of one object per rider.
+ * A rider is known by its index. Times are simulated seconds, -1 if not yet.
+ * <p>
+ * Memory is bounded: past {@link #MAX_RETAINED} riders, the oldest ones are forgotten,
+ * so that replaying a huge workload never runs out. The histograms keep their numbers.
+ * Not thread-safe: each elevator keeps its own log.
+ */
+public class PassengerLog {
+    private static final int INITIAL_CAPACITY = 256;
+
+    // A power of two, so that an index maps to its slot with a mask.
+    public static final int MAX_RETAINED = 1 << 16;
+
+    private int size;
+    private int[] arrivalTimes = new int[INITIAL_CAPACITY];
+    private int[] boardingTimes = new int[INITIAL_CAPACITY];
+    private int[] alightingTimes = new int[INITIAL_CAPACITY];
+    private int[] origins = new int[INITIAL_CAPACITY];
+    private int[] destinations = new int[INITIAL_CAPACITY];
+
+    /**
+     * @return the index of the boarded rider.
+     */
+    public int add(int arrivalTime, int boardingTime, int origin, int destination) {
+        if (size == arrivalTimes.length && size < MAX_RETAINED) {
+            // Nothing wrapped around yet, so a plain copy keeps the slots.
+            int capacity = size * 2;
+            arrivalTimes = Arrays.copyOf(arrivalTimes, capacity);
+            boardingTimes = Arrays.copyOf(boardingTimes, capacity);
+            alightingTimes = Arrays.copyOf(alightingTimes, capacity);
+            origins = Arrays.copyOf(origins, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+        }
+        int slot = size & (arrivalTimes.length - 1);
+        arrivalTimes[slot] = arrivalTime;
+        boardingTimes[slot] = boardingTime;
+        alightingTimes[slot] = -1;
+        origins[slot] = origin;
+        destinations[slot] = destination;
+        return size++;
+    }
+
+    public void setAlightingTime(int passenger, int time) {
+        alightingTimes[slotOf(passenger)] = time;
+    }
+
+    /**
+     * @return the riders logged so far, forgotten ones included.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the index of the oldest rider still known.
+     */
+    public int getFirstRetained() {
+        return Math.max(size - arrivalTimes.length, 0);
+    }
+
+    public int getArrivalTime(int passenger) {
+        return arrivalTimes[slotOf(passenger)];
+    }
+
+    public int getBoardingTime(int passenger) {
+        return boardingTimes[slotOf(passenger)];
+    }
+
+    public int getAlightingTime(int passenger) {
+        return alightingTimes[slotOf(passenger)];
+    }
+
+    public int getOrigin(int passenger) {
+        return origins[slotOf(passenger)];
+    }
+
+    public int getDestination(int passenger) {
+        return destinations[slotOf(passenger)];
+    }
+
+    private int slotOf(int passenger) {
+        if (passenger < getFirstRetained() || passenger >= size) {
+            throw new IndexOutOfBoundsException("Rider #" + passenger + " is not in the log.");
+        }
+        return passenger & (arrivalTimes.length - 1);
+    }
+}
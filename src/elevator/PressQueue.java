@@ -0,0 +1,151 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Button presses on their way from the building bus to the controller, see {@link PressServer}.
+ * A bounded ring of frames, for one producer thread and one consumer thread, without locks or allocation.
+ * A press of a button already in the queue is dropped: it would change nothing.
+ * So the queue never holds more than one frame per button, however fast they are pressed.
+ */
+public class PressQueue {
+    // Frame layout, one int: kind in bits 30-31, elevator in bits 16-29, floor in bits 0-15.
+    public static final int HALL_UP = 1;
+    public static final int HALL_DOWN = 2;
+    public static final int CAR = 3;
+    public static final int MAX_ELEVATORS = 1 << 14;
+
+    private final int numFloors;
+    private final int numElevators;
+    private final int[] ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // Bit X is set while the frame of button X is queued.
+    private final AtomicLongArray queuedButtons;
+
+    // Written by the producer only.
+    private volatile long offered;
+    private volatile long coalesced;
+
+    /**
+     * @param capacity rounded up to a power of two.
+     */
+    public PressQueue(int numFloors, int numElevators, int capacity) {
+        this.numFloors = numFloors;
+        this.numElevators = numElevators;
+        this.ring = new int[Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1)];
+        this.mask = ring.length - 1;
+        int buttons = numFloors * 2 + numElevators * numFloors;
+        this.queuedButtons = new AtomicLongArray((buttons + 63) / 64);
+    }
+
+    public static int hallFrame(int floor, Elevator.Direction direction) {
+        return (direction == Elevator.Direction.UP ? HALL_UP : HALL_DOWN) << 30 | floor;
+    }
+
+    public static int carFrame(int elevatorId, int floor) {
+        return CAR << 30 | elevatorId << 16 | floor;
+    }
+
+    public static int kindOf(int frame) {
+        return frame >>> 30;
+    }
+
+    public static int elevatorOf(int frame) {
+        return frame >>> 16 & (MAX_ELEVATORS - 1);
+    }
+
+    public static int floorOf(int frame) {
+        return frame & 0xffff;
+    }
+
+    /**
+     * @return true if the frame names a button of this building.
+     */
+    public boolean isValid(int frame) {
+        int kind = kindOf(frame);
+        if (kind == 0 || floorOf(frame) >= numFloors) {
+            return false;
+        }
+        return kind == CAR ? elevatorOf(frame) < numElevators : elevatorOf(frame) == 0;
+    }
+
+    /**
+     * Queue a valid frame, or drop it if its button is queued already. Producer thread only.
+     *
+     * @return false if the queue is full: the frame is neither queued nor dropped, offer it again later.
+     */
+    public boolean offer(int frame) {
+        int button = buttonOf(frame);
+        long bit = 1L << button;
+        if ((queuedButtons.get(button >>> 6) & bit) != 0) {
+            ++coalesced;
+            ++offered;
+            return true;
+        }
+        long t = tail.get();
+        if (t - head.get() == ring.length) {
+            return false;
+        }
+        queuedButtons.getAndAccumulate(button >>> 6, bit, (word, b) -> word | b);
+        ring[(int) t & mask] = frame;
+        tail.lazySet(t + 1);
+        ++offered;
+        return true;
+    }
+
+    /**
+     * Take the next frame. Consumer thread only.
+     * The button may be queued again from here on, so apply the frame after this returns.
+     *
+     * @return the frame, or 0 if the queue is empty.
+     */
+    public int poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return 0;
+        }
+        int frame = ring[(int) h & mask];
+        int button = buttonOf(frame);
+        queuedButtons.getAndAccumulate(button >>> 6, ~(1L << button), (word, b) -> word & b);
+        head.lazySet(h + 1);
+        return frame;
+    }
+
+    private int buttonOf(int frame) {
+        int floor = floorOf(frame);
+        return switch (kindOf(frame)) {
+            case HALL_UP -> floor * 2;
+            case HALL_DOWN -> floor * 2 + 1;
+            default -> numFloors * 2 + elevatorOf(frame) * numFloors + floor;
+        };
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * @return the frames offered and taken, queued or dropped.
+     */
+    public long getOffered() {
+        return offered;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import elevator.simulate.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes button presses of the floor and car panels over TCP, for a live building on a real-time clock.
+ * Every press is a 4-byte big-endian frame of {@link PressQueue}, any number of them back to back per connection.
+ * <p>
+ * One selector thread reads all connections into buffers of their own and decodes the frames in place.
+ * One applier thread takes them from a {@link PressQueue} and presses the hall call or the car button.
+ * Once the queue is full, the connection that filled it is not read until the queue is half empty,
+ * so the senders are held back by TCP itself. Frames naming no button of the building are dropped.
+ */
+public class PressServer implements Closeable {
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int FRAME_BYTES = 4;
+
+    private final HallCallBoard board;
+    private final List<Elevator> elevators;
+    private final PressQueue queue;
+    private final Logger logger;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+
+    // Connections not read until the queue has room. Selector thread only.
+    private final List<SelectionKey> pausedKeys = new ArrayList<>();
+
+    // Set by the selector thread as it pauses a connection, cleared by the applier as it wakes the selector up.
+    private volatile boolean isPaused;
+
+    private Thread selectorThread;
+    private Thread applierThread;
+    private volatile boolean isRunning;
+
+    // Written by one thread each, read from any.
+    private volatile long framesInvalid;
+    private volatile long framesApplied;
+    private volatile long pauses;
+    private volatile int connections;
+
+    /**
+     * @param address       where to listen. Port 0 for any free port, see {@link #getAddress()}.
+     * @param queueCapacity the frames between the selector and the applier. More than the buttons never fill.
+     */
+    public PressServer(ElevatorService service, InetSocketAddress address, int queueCapacity, Logger logger)
+        throws IOException {
+        this.board = service.getBoard();
+        this.elevators = List.copyOf(service.getElevators());
+        this.queue = new PressQueue(board.getNumFloors(), elevators.size(), queueCapacity);
+        this.logger = logger;
+
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    public void start() {
+        isRunning = true;
+        selectorThread = new Thread(this::select, "press-selector");
+        applierThread = new Thread(this::apply, "press-applier");
+        selectorThread.setDaemon(true);
+        applierThread.setDaemon(true);
+        selectorThread.start();
+        applierThread.start();
+    }
+
+    /**
+     * Stop listening and drop the connections. Presses still queued are dropped too.
+     */
+    @Override
+    public void close() throws IOException {
+        isRunning = false;
+        selector.wakeup();
+        try {
+            if (selectorThread != null) {
+                selectorThread.join();
+                applierThread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void select() {
+        while (isRunning) {
+            try {
+                // While paused, the applier wakes us up once there is room.
+                selector.select(100);
+                resumeIfRoom();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Press server: %s", e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocateDirect(BUFFER_BYTES));
+        ++connections;
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        int read;
+        try {
+            read = channel.read(buffer);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            key.cancel();
+            closeQuietly(channel);
+            --connections;
+            return;
+        }
+        decode(key, buffer);
+    }
+
+    /**
+     * Queue the whole frames of the buffer, and keep the rest for the next read.
+     * If the queue fills up, stop reading the connection.
+     */
+    private void decode(SelectionKey key, ByteBuffer buffer) {
+        buffer.flip();
+        while (buffer.remaining() >= FRAME_BYTES) {
+            int frame = buffer.getInt(buffer.position());
+            if (!queue.isValid(frame)) {
+                ++framesInvalid;
+            } else if (!queue.offer(frame)) {
+                key.interestOps(0);
+                pausedKeys.add(key);
+                isPaused = true;
+                ++pauses;
+                break;
+            }
+            buffer.position(buffer.position() + FRAME_BYTES);
+        }
+        buffer.compact();
+    }
+
+    private void resumeIfRoom() {
+        if (pausedKeys.isEmpty() || queue.size() > queue.capacity() / 2) {
+            return;
+        }
+        List<SelectionKey> paused = new ArrayList<>(pausedKeys);
+        pausedKeys.clear();
+        for (SelectionKey key : paused) {
+            if (!key.isValid()) {
+                continue;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            // What was read before the pause goes first.
+            decode(key, (ByteBuffer) key.attachment());
+        }
+    }
+
+    private void apply() {
+        while (isRunning) {
+            if (isPaused && queue.size() <= queue.capacity() / 2) {
+                isPaused = false;
+                selector.wakeup();
+            }
+            int frame = queue.poll();
+            if (frame == 0) {
+                LockSupport.parkNanos(50_000);
+                continue;
+            }
+            int floor = PressQueue.floorOf(frame);
+            switch (PressQueue.kindOf(frame)) {
+                case PressQueue.HALL_UP -> board.setRequested(floor, Elevator.Direction.UP, true);
+                case PressQueue.HALL_DOWN -> board.setRequested(floor, Elevator.Direction.DOWN, true);
+                default -> elevators.get(PressQueue.elevatorOf(frame)).pressCarButton(floor);
+            }
+            ++framesApplied;
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Gone already.
+        }
+    }
+
+    /**
+     * @return the valid frames received, queued or coalesced.
+     */
+    public long getFramesReceived() {
+        return queue.getOffered();
+    }
+
+    public long getFramesCoalesced() {
+        return queue.getCoalesced();
+    }
+
+    public long getFramesApplied() {
+        return framesApplied;
+    }
+
+    public long getFramesInvalid() {
+        return framesInvalid;
+    }
+
+    /**
+     * @return how often a connection was held back for a full queue.
+     */
+    public long getPauses() {
+        return pauses;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+}
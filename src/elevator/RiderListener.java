@@ -0,0 +1,23 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+/**
+ * Told by an elevator as its riders board and get off, on the thread of the elevator.
+ * See {@link Elevator#setRiderListener}.
+ */
+public interface RiderListener {
+    /**
+     * A rider from the waiting passengers boarded.
+     */
+    void onBoarded(int elevatorId, int floor, int destination);
+
+    /**
+     * Riders got off, all of them going to this floor.
+     */
+    void onAlighted(int elevatorId, int floor, int riders);
+}
@@ -0,0 +1,24 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import java.util.List;
+
+/**
+ * No group control: every elevator scans in its direction and claims the first call it finds.
+ */
+public class ScanDispatchStrategy implements DispatchStrategy {
+    @Override
+    public boolean isSelfClaiming() {
+        return true;
+    }
+
+    @Override
+    public void onHallCall(int floor, Elevator.Direction direction, List<Elevator> elevators, HallCallBoard board) {
+        // Left to the elevators.
+    }
+}
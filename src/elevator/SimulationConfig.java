@@ -6,8 +6,12 @@
 
 package elevator;
 
+import elevator.simulate.Clock;
+import elevator.simulate.TrafficProfile;
 import elevator.simulate.UniformRandom;
 
+import java.nio.file.Path;
+
 public record SimulationConfig(
     int runningSeconds,
     int millisecondsPerSecond,
@@ -16,23 +20,60 @@ public record SimulationConfig(
     int openDoorSeconds,
     int closeDoorSeconds,
     int waitOnBoardSeconds,
-    Callable<Integer> randomRiderGenerator,
-    Callable<Integer> randomRequestTickGenerator
+    RandomIntGenerator randomRiderGenerator,
+    RandomIntGenerator randomRequestTickGenerator,
+    ClockMode clockMode,
+    int clockWorkerThreads,
+    long seed,
+    Dispatch dispatch,
+    TrafficProfile trafficProfile,
+    Path passengerFile,
+    Clock.Pacing pacing
 ) {
+    public enum ClockMode {
+        // Every elevator is driven by its own clock ticking every simulated second.
+        PER_ELEVATOR,
+
+        // All elevators are driven in lockstep by one shared clock.
+        // The ticks fan out to `clockWorkerThreads` workers, sequentially if 1.
+        SHARED,
+
+        // All elevators are driven by one event scheduler, jumping from event to event.
+        // Always runs as fast as possible, regardless of `millisecondsPerSecond`.
+        EVENT
+    }
+
+    public enum Dispatch {
+        // Every elevator claims the nearest call in its direction on its own.
+        SCAN,
+
+        // Every call goes to the elevator closest to its floor.
+        NEAREST_CAR,
+
+        // Every call goes to the elevator with the lowest estimated time to arrival.
+        ETA,
+
+        // Passengers key in their destination at the floor, and are grouped into cars by it.
+        // Needs a traffic profile or a passenger file.
+        DESTINATION
+    }
+
     protected static final int DEFAULT_MOVE_UP_TO_NEIGHBOUR_FLOOR_SECONDS = 5;
     protected static final int DEFAULT_MOVE_DOWN_TO_NEIGHBOUR_FLOOR_SECONDS = 5;
     protected static final int DEFAULT_OPEN_DOOR_SECONDS = 0;
     protected static final int DEFAULT_CLOSE_DOOR_SECONDS = 0;
     protected static final int DEFAULT_WAIT_ON_BOARD_SECONDS = 15;
 
-    protected static final Callable<Integer> defaultRandomRiderGenerator = () -> {
-        return (Integer) new UniformRandom().nextRandomItemOf(new Integer[] {
-            0, 0, 0, 1, 1, 1, 1, 1, 1, 2
-        });
+    protected static final int[] DEFAULT_RIDERS = {
+        0, 0, 0, 1, 1, 1, 1, 1, 1, 2
+    };
+
+    protected static final RandomIntGenerator defaultRandomRiderGenerator = (random) -> {
+        return random.nextRandomItemOf(DEFAULT_RIDERS);
     };
 
-    protected static final Callable<Integer> defaultRandomRequestTickGenerator = () -> {
-        return new UniformRandom().nextInt(20, 121);
+    protected static final RandomIntGenerator defaultRandomRequestTickGenerator = (random) -> {
+        return random.nextInt(20, 121);
     };
 
     public static SimulationConfig defaultConfig(int runningSeconds, int millisecondsPerSecond) {
@@ -44,11 +85,174 @@ public record SimulationConfig(
             DEFAULT_CLOSE_DOOR_SECONDS,
             DEFAULT_WAIT_ON_BOARD_SECONDS,
             defaultRandomRiderGenerator,
-            defaultRandomRequestTickGenerator
+            defaultRandomRequestTickGenerator,
+            ClockMode.PER_ELEVATOR,
+            1,
+            System.nanoTime(),
+            Dispatch.SCAN,
+            null,
+            null,
+            Clock.Pacing.CATCH_UP
+        );
+    }
+
+    public SimulationConfig withClockMode(ClockMode clockMode) {
+        return new SimulationConfig(
+            runningSeconds, millisecondsPerSecond,
+            moveUpToNeighbourFloorSeconds,
+            moveDownToNeighbourFloorSeconds,
+            openDoorSeconds,
+            closeDoorSeconds,
+            waitOnBoardSeconds,
+            randomRiderGenerator,
+            randomRequestTickGenerator,
+            clockMode,
+            clockWorkerThreads,
+            seed,
+            dispatch,
+            trafficProfile,
+            passengerFile,
+            pacing
+        );
+    }
+
+    public SimulationConfig withClockWorkerThreads(int clockWorkerThreads) {
+        return new SimulationConfig(
+            runningSeconds, millisecondsPerSecond,
+            moveUpToNeighbourFloorSeconds,
+            moveDownToNeighbourFloorSeconds,
+            openDoorSeconds,
+            closeDoorSeconds,
+            waitOnBoardSeconds,
+            randomRiderGenerator,
+            randomRequestTickGenerator,
+            clockMode,
+            clockWorkerThreads,
+            seed,
+            dispatch,
+            trafficProfile,
+            passengerFile,
+            pacing
+        );
+    }
+
+    public SimulationConfig withSeed(long seed) {
+        return new SimulationConfig(
+            runningSeconds, millisecondsPerSecond,
+            moveUpToNeighbourFloorSeconds,
+            moveDownToNeighbourFloorSeconds,
+            openDoorSeconds,
+            closeDoorSeconds,
+            waitOnBoardSeconds,
+            randomRiderGenerator,
+            randomRequestTickGenerator,
+            clockMode,
+            clockWorkerThreads,
+            seed,
+            dispatch,
+            trafficProfile,
+            passengerFile,
+            pacing
+        );
+    }
+
+    public SimulationConfig withDispatch(Dispatch dispatch) {
+        return new SimulationConfig(
+            runningSeconds, millisecondsPerSecond,
+            moveUpToNeighbourFloorSeconds,
+            moveDownToNeighbourFloorSeconds,
+            openDoorSeconds,
+            closeDoorSeconds,
+            waitOnBoardSeconds,
+            randomRiderGenerator,
+            randomRequestTickGenerator,
+            clockMode,
+            clockWorkerThreads,
+            seed,
+            dispatch,
+            trafficProfile,
+            passengerFile,
+            pacing
+        );
+    }
+
+    /**
+     * @param trafficProfile the passengers of the whole building.
+     *                       Null to let each elevator make up random requests instead.
+     */
+    public SimulationConfig withTrafficProfile(TrafficProfile trafficProfile) {
+        return new SimulationConfig(
+            runningSeconds, millisecondsPerSecond,
+            moveUpToNeighbourFloorSeconds,
+            moveDownToNeighbourFloorSeconds,
+            openDoorSeconds,
+            closeDoorSeconds,
+            waitOnBoardSeconds,
+            randomRiderGenerator,
+            randomRequestTickGenerator,
+            clockMode,
+            clockWorkerThreads,
+            seed,
+            dispatch,
+            trafficProfile,
+            passengerFile,
+            pacing
+        );
+    }
+
+    /**
+     * @param passengerFile the passengers of the whole building, replayed from a CSV or JSONL log,
+     *                      see {@link elevator.simulate.FilePassengerSource}. Takes precedence over the profile.
+     *                      Null to not replay.
+     */
+    public SimulationConfig withPassengerFile(Path passengerFile) {
+        return new SimulationConfig(
+            runningSeconds, millisecondsPerSecond,
+            moveUpToNeighbourFloorSeconds,
+            moveDownToNeighbourFloorSeconds,
+            openDoorSeconds,
+            closeDoorSeconds,
+            waitOnBoardSeconds,
+            randomRiderGenerator,
+            randomRequestTickGenerator,
+            clockMode,
+            clockWorkerThreads,
+            seed,
+            dispatch,
+            trafficProfile,
+            passengerFile,
+            pacing
+        );
+    }
+
+    /**
+     * @param pacing what a real-time clock does about ticks that miss their deadline, see {@link Clock.Pacing}.
+     */
+    public SimulationConfig withPacing(Clock.Pacing pacing) {
+        return new SimulationConfig(
+            runningSeconds, millisecondsPerSecond,
+            moveUpToNeighbourFloorSeconds,
+            moveDownToNeighbourFloorSeconds,
+            openDoorSeconds,
+            closeDoorSeconds,
+            waitOnBoardSeconds,
+            randomRiderGenerator,
+            randomRequestTickGenerator,
+            clockMode,
+            clockWorkerThreads,
+            seed,
+            dispatch,
+            trafficProfile,
+            passengerFile,
+            pacing
         );
     }
 
-    interface Callable<T> {
-        T call();
+    /**
+     * Draws a number from the random stream of the elevator asking for it,
+     * so that a seeded simulation is repeatable.
+     */
+    public interface RandomIntGenerator {
+        int next(UniformRandom random);
     }
 }
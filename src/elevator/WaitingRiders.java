@@ -0,0 +1,169 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The passengers waiting at every floor, one queue per direction, in arrival order.
+ * Each passenger is one long: the arrival time in the high half, the destination in the low half.
+ * Each queue has a lock of its own, as elevators on other threads board from other floors.
+ */
+public class WaitingRiders implements BoardingQueues {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Indexed by floor * 2 + direction (0 up, 1 down), like the hall call board.
+    private final long[][] queues;
+    private final int[] heads;
+    private final int[] sizes;
+    private final Object[] locks;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public WaitingRiders(int numFloors) {
+        queues = new long[numFloors * 2][];
+        heads = new int[numFloors * 2];
+        sizes = new int[numFloors * 2];
+        locks = new Object[numFloors * 2];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new long[INITIAL_CAPACITY];
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return the direction of the trip. IDLE if it goes nowhere.
+     */
+    public static Elevator.Direction directionOf(int origin, int destination) {
+        if (destination > origin) {
+            return Elevator.Direction.UP;
+        }
+        return destination < origin ? Elevator.Direction.DOWN : Elevator.Direction.IDLE;
+    }
+
+    public void add(int floor, int arrivalTime, int destination) {
+        int slot = slotOf(floor, directionOf(floor, destination));
+        synchronized (locks[slot]) {
+            long[] queue = queues[slot];
+            if (sizes[slot] == queue.length) {
+                // Unwrap into a larger ring.
+                long[] grown = new long[queue.length * 2];
+                int head = heads[slot];
+                System.arraycopy(queue, head, grown, 0, queue.length - head);
+                System.arraycopy(queue, 0, grown, queue.length - head, head);
+                queues[slot] = queue = grown;
+                heads[slot] = 0;
+            }
+            queue[(heads[slot] + sizes[slot]) & (queue.length - 1)] = riderOf(arrivalTime, destination);
+            ++sizes[slot];
+        }
+        waiting.incrementAndGet();
+    }
+
+    @Override
+    public int size(int floor, Elevator.Direction direction) {
+        int slot = slotOf(floor, direction);
+        synchronized (locks[slot]) {
+            return sizes[slot];
+        }
+    }
+
+    /**
+     * Take the first passengers of a queue.
+     *
+     * @param riders where they go, as packed by this class. See {@link #arrivalTimeOf} and {@link #destinationOf}.
+     * @return how many were taken, at most max.
+     */
+    public int board(int floor, Elevator.Direction direction, int max, long[] riders) {
+        int slot = slotOf(floor, direction);
+        int taken;
+        synchronized (locks[slot]) {
+            long[] queue = queues[slot];
+            taken = Math.min(Math.min(max, sizes[slot]), riders.length);
+            for (int i = 0; i < taken; i++) {
+                riders[i] = queue[heads[slot]];
+                heads[slot] = (heads[slot] + 1) & (queue.length - 1);
+            }
+            sizes[slot] -= taken;
+        }
+        waiting.addAndGet(-taken);
+        return taken;
+    }
+
+    /**
+     * The same as the one above: which car takes them makes no difference here.
+     */
+    @Override
+    public int board(int elevatorId, int floor, Elevator.Direction direction, int max, long[] riders) {
+        return board(floor, direction, max, riders);
+    }
+
+    @Override
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * Write every queue, in arrival order. Call while no elevator boards.
+     */
+    void writeState(DataOutput out) throws IOException {
+        for (int slot = 0; slot < queues.length; slot++) {
+            long[] queue = queues[slot];
+            out.writeInt(sizes[slot]);
+            for (int i = 0; i < sizes[slot]; i++) {
+                out.writeLong(queue[(heads[slot] + i) & (queue.length - 1)]);
+            }
+        }
+    }
+
+    /**
+     * Replace every queue with those written by {@link #writeState}. Call while no elevator boards.
+     */
+    void readState(DataInput in) throws IOException {
+        int total = 0;
+        for (int slot = 0; slot < queues.length; slot++) {
+            int size = in.readInt();
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < size) {
+                capacity *= 2;
+            }
+            long[] queue = new long[capacity];
+            for (int i = 0; i < size; i++) {
+                queue[i] = in.readLong();
+            }
+            queues[slot] = queue;
+            heads[slot] = 0;
+            sizes[slot] = size;
+            total += size;
+        }
+        waiting.set(total);
+    }
+
+    /**
+     * @return the rider packed as in the queues.
+     */
+    public static long riderOf(int arrivalTime, int destination) {
+        return (long) arrivalTime << 32 | (destination & 0xffffffffL);
+    }
+
+    public static int arrivalTimeOf(long rider) {
+        return (int) (rider >>> 32);
+    }
+
+    public static int destinationOf(long rider) {
+        return (int) rider;
+    }
+
+    static int slotOf(int floor, Elevator.Direction direction) {
+        if (direction == Elevator.Direction.IDLE) {
+            throw new IllegalArgumentException("A waiting rider goes either up or down.");
+        }
+        return floor * 2 + (direction == Elevator.Direction.UP ? 0 : 1);
+    }
+}
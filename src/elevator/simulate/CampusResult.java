@@ -0,0 +1,47 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.util.List;
+
+/**
+ * The numbers of a whole campus: every building on its own, and all of them merged.
+ */
+public record CampusResult(
+    List<SimulationResult> buildings,
+    int numElevators,
+    long ridersRequested,
+    long ridersServed,
+    double servedPerElevatorHour,
+    LatencyHistogram waitTimes,
+    LatencyHistogram rideTimes,
+    int shards,
+    long wallNanos
+) {
+    public long ridersNotPickedUp() {
+        return ridersRequested - ridersServed;
+    }
+
+    public void print(Logger logger) {
+        logger.loggingMutex.lock();
+
+        logger.info("Campus of %d buildings, %d elevators, in %d shards: %.3f wall seconds. Report: ",
+            buildings.size(), numElevators, shards, wallNanos / 1e9);
+        logger.info("\t     Riders requested: %d", ridersRequested);
+        logger.info("\t        Riders served: %d", ridersServed);
+        logger.info("\t Riders not picked up: %d", ridersNotPickedUp());
+        logger.info("\t Served per elevator-hour: %.2f", servedPerElevatorHour);
+        logger.info("\t            Wait time: p50 %d, p90 %d, p99 %d, max %d seconds",
+            waitTimes.getPercentile(50), waitTimes.getPercentile(90),
+            waitTimes.getPercentile(99), waitTimes.getMax());
+        logger.info("\t            Ride time: p50 %d, p90 %d, p99 %d, max %d seconds",
+            rideTimes.getPercentile(50), rideTimes.getPercentile(90),
+            rideTimes.getPercentile(99), rideTimes.getMax());
+
+        logger.loggingMutex.unlock();
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import elevator.Elevator;
+import elevator.Fleet;
+import elevator.SimulationConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs a portfolio of independent buildings side by side.
+ * The buildings are split into one shard per worker thread, balanced by their size.
+ * Each shard runs its buildings one after the other, in event mode on its own thread,
+ * with a logger and statistics of its own. Nothing is shared between the shards
+ * until their statistics are merged at the end.
+ */
+public class CampusRunner {
+    private final int shards;
+    private final Supplier<Logger> loggerFactory;
+
+    public CampusRunner() {
+        this(Runtime.getRuntime().availableProcessors(), Logger::silent);
+    }
+
+    /**
+     * @param shards        the number of worker threads, usually one per core.
+     * @param loggerFactory creates the logger of each shard, closed once it is done.
+     */
+    public CampusRunner(int shards, Supplier<Logger> loggerFactory) {
+        this.shards = Math.max(shards, 1);
+        this.loggerFactory = loggerFactory;
+    }
+
+    /**
+     * Run and block until every building is complete.
+     * Building i is seeded with the i-th of {@link ScenarioRunner#seeds}, whatever shard it lands in.
+     *
+     * @return the campus statistics, the buildings in the given order.
+     */
+    public CampusResult run(List<Scenario> buildings, long masterSeed) {
+        long[] seeds = ScenarioRunner.seeds(masterSeed, buildings.size());
+        SimulationResult[] results = new SimulationResult[buildings.size()];
+        int[][] assignment = partition(buildings);
+
+        List<Callable<Shard>> tasks = new ArrayList<>();
+        for (int[] shardBuildings : assignment) {
+            tasks.add(() -> {
+                Shard shard = new Shard();
+                try (Logger logger = loggerFactory.get()) {
+                    for (int index : shardBuildings) {
+                        Scenario building = buildings.get(index);
+                        SimulationConfig config = building.config()
+                            .withClockMode(SimulationConfig.ClockMode.EVENT)
+                            .withSeed(seeds[index]);
+                        ElevatorSimulator simulator = new ElevatorSimulator(
+                            building.numFloors(), building.numElevators(), building.elevatorCapacity(), config, logger
+                        );
+                        simulator.run();
+
+                        // Each shard writes the slots of its own buildings only.
+                        results[index] = simulator.getResult();
+                        shard.add(results[index], building.numElevators(), config.runningSeconds());
+                        for (Elevator elevator : simulator.getService().getElevators()) {
+                            shard.waitTimes.merge(elevator.getWaitTimes());
+                            shard.rideTimes.merge(elevator.getRideTimes());
+                        }
+                    }
+                }
+                return shard;
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        List<Shard> done = runShards(tasks);
+        long wallNanos = System.nanoTime() - startNanos;
+        return merge(Arrays.asList(results), done, assignment.length, wallNanos);
+    }
+
+    /**
+     * Run every building of the fleet for its running time, contiguous ranges of buildings in parallel.
+     *
+     * @return the campus statistics, one result per building of the fleet.
+     */
+    public CampusResult run(Fleet fleet, int runningSeconds) {
+        int numBuildings = fleet.getNumBuildings();
+        int numShards = Math.min(shards, Math.max(numBuildings, 1));
+
+        List<Callable<Shard>> tasks = new ArrayList<>();
+        for (int s = 0; s < numShards; s++) {
+            int from = (int) ((long) numBuildings * s / numShards);
+            int to = (int) ((long) numBuildings * (s + 1) / numShards);
+            tasks.add(() -> {
+                fleet.advance(from, to, runningSeconds);
+                Shard shard = new Shard();
+                for (int building = from; building < to; building++) {
+                    shard.add(fleet.getResult(building), fleet.getCarsPerBuilding(), runningSeconds);
+                    shard.waitTimes.merge(fleet.getWaitTimes(building));
+                    shard.rideTimes.merge(fleet.getRideTimes(building));
+                }
+                return shard;
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        List<Shard> done = runShards(tasks);
+        long wallNanos = System.nanoTime() - startNanos;
+        fleet.addTime(runningSeconds);
+
+        List<SimulationResult> results = new ArrayList<>();
+        for (int building = 0; building < numBuildings; building++) {
+            results.add(fleet.getResult(building));
+        }
+        return merge(results, done, numShards, wallNanos);
+    }
+
+    /**
+     * Longest first, each to the least loaded shard.
+     * A building costs roughly its elevators times its seconds.
+     *
+     * @return the indexes of the buildings of each shard. No empty shards.
+     */
+    private int[][] partition(List<Scenario> buildings) {
+        int numShards = Math.min(shards, Math.max(buildings.size(), 1));
+        Integer[] order = new Integer[buildings.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> costOf(buildings.get(i))).reversed());
+
+        long[] loads = new long[numShards];
+        List<List<Integer>> shardBuildings = new ArrayList<>();
+        for (int s = 0; s < numShards; s++) {
+            shardBuildings.add(new ArrayList<>());
+        }
+        for (int index : order) {
+            int lightest = 0;
+            for (int s = 1; s < numShards; s++) {
+                if (loads[s] < loads[lightest]) {
+                    lightest = s;
+                }
+            }
+            loads[lightest] += costOf(buildings.get(index));
+            shardBuildings.get(lightest).add(index);
+        }
+
+        int[][] assignment = new int[numShards][];
+        for (int s = 0; s < numShards; s++) {
+            assignment[s] = shardBuildings.get(s).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return assignment;
+    }
+
+    private static long costOf(Scenario building) {
+        return (long) building.numElevators() * building.config().runningSeconds();
+    }
+
+    private List<Shard> runShards(List<Callable<Shard>> tasks) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(tasks.size(), 1));
+        List<Future<Shard>> futures;
+        try {
+            futures = pool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the campus.", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Shard> done = new ArrayList<>();
+        for (Future<Shard> future : futures) {
+            try {
+                done.add(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Shard failed.", e);
+            }
+        }
+        return done;
+    }
+
+    private static CampusResult merge(List<SimulationResult> buildings, List<Shard> shards, int numShards, long wallNanos) {
+        Shard campus = new Shard();
+        for (Shard shard : shards) {
+            campus.numElevators += shard.numElevators;
+            campus.ridersRequested += shard.ridersRequested;
+            campus.ridersServed += shard.ridersServed;
+            campus.elevatorSeconds += shard.elevatorSeconds;
+            campus.waitTimes.merge(shard.waitTimes);
+            campus.rideTimes.merge(shard.rideTimes);
+        }
+
+        return new CampusResult(
+            List.copyOf(buildings),
+            campus.numElevators,
+            campus.ridersRequested,
+            campus.ridersServed,
+            campus.elevatorSeconds == 0 ? 0 : campus.ridersServed * 3600.0 / campus.elevatorSeconds,
+            campus.waitTimes,
+            campus.rideTimes,
+            numShards,
+            wallNanos
+        );
+    }
+
+    /**
+     * The statistics of one shard, only touched by its own thread until merged.
+     */
+    private static class Shard {
+        int numElevators;
+        long ridersRequested;
+        long ridersServed;
+        long elevatorSeconds;
+        final LatencyHistogram waitTimes = new LatencyHistogram();
+        final LatencyHistogram rideTimes = new LatencyHistogram();
+
+        void add(SimulationResult result, int elevators, int runningSeconds) {
+            numElevators += elevators;
+            ridersRequested += result.ridersRequested();
+            ridersServed += result.ridersServed();
+            elevatorSeconds += (long) elevators * runningSeconds;
+        }
+    }
+}
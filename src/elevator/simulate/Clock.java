@@ -7,14 +7,20 @@
 package elevator.simulate;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 public class Clock {
     public interface OnTickListener {
-        void onTick(boolean isLastTick, boolean isSkippingTick);
+        void onTick(boolean isLastTick);
     }
 
     public interface OnTickDoneListener {
@@ -36,22 +42,101 @@ public class Clock {
         }
     }
 
+    /**
+     * What a real-time clock does about ticks that miss their deadline, e.g. as a listener blocks on the log.
+     * All but DROP run every tick, one per simulated second, so the results are the same: only the wall times
+     * of the ticks differ. DROP keeps the simulated time on the wall clock instead, and the results do not hold.
+     */
+    public enum Pacing {
+        // Run the ticks missed back to back until on time again, however many. Bursts after a long stall.
+        CATCH_UP,
+
+        // Give up the ticks whose deadline passed: the clock jumps over them, and no listener sees those seconds.
+        DROP,
+
+        // Run the ticks missed back to back, at most MAX_COALESCED of them, then move the deadlines on:
+        // the ticks beyond run late instead of in a burst.
+        COALESCE,
+
+        // Move the deadlines on, and stretch the period while the ticks take longer than it,
+        // shrinking it back once they are faster. Slows the simulation down to what the machine keeps up with.
+        SLOW_DOWN
+    }
+
+    // Milliseconds of one second to run the clock as fast as possible.
+    public static final int MAX_SPEED = 0;
+
+    // Ticks run back to back after missing their deadline, in COALESCE.
+    public static final int MAX_COALESCED = 4;
+
     protected int tick;
-    protected int tickSkipRemaining;
 
     protected int totalTicks;
-    protected boolean isRunning;
+    protected volatile boolean isRunning;
     protected ScheduledExecutorService executorService;
     protected ScheduledFuture<?> future;
+    // The thread of the executor, once it runs the ticks.
+    protected volatile Thread tickerThread;
     protected ArrayList<OnTickListener> onTickListeners;
     protected ArrayList<OnTickDoneListener> onTickDoneListeners;
 
+    // Fan-out of one tick to the listeners. Null if the listeners run on the clock thread.
+    // Only let go by the clock thread, once no tick is under way.
+    protected final int workerThreads;
+    protected ExecutorService workerService;
+    protected List<Callable<Void>> workerTasks;
+
+    protected final Logger logger;
+
+    // When the clock started, and the wall time between two ticks. 0 if as fast as possible.
+    protected long startNanos;
+    protected long periodNanos;
+
+    protected Pacing pacing = Pacing.CATCH_UP;
+
+    // How long the ticks take and how late they start, in microseconds, and what was done about it.
+    // Guarded by pacingLock. Lateness only in real time.
+    protected final Object pacingLock = new Object();
+    protected final LatencyHistogram tickMicros = new LatencyHistogram();
+    protected final LatencyHistogram lateMicros = new LatencyHistogram();
+    protected long missedDeadlines;
+    protected long droppedDeadlines;
+    protected long droppedTicks;
+    protected long longestPeriodNanos;
+    // The period of SLOW_DOWN, the configured one otherwise.
+    protected volatile long currentPeriodNanos;
+
+    // How late the ticks start against the wall clock. Null if no metrics.
+    protected LongAdder tickCounter;
+    protected LongAdder lateTickCounter;
+    protected LongAccumulator maxLagMicros;
+    protected LongAdder missedDeadlineCounter;
+    protected volatile long lagMicros;
+
     public Clock() {
+        this(1, Logger.getDefault());
+    }
+
+    /**
+     * @param workerThreads the number of threads the listeners are spread across on each tick.
+     *                      1 runs all listeners sequentially on the clock thread.
+     *                      Every tick waits for all workers before the next one begins.
+     * @param logger        where the errors of the listeners go.
+     */
+    public Clock(int workerThreads, Logger logger) {
         tick = 0;
-        tickSkipRemaining = 0;
         totalTicks = 0;
         onTickListeners = new ArrayList<>();
         onTickDoneListeners = new ArrayList<>();
+        this.workerThreads = Math.max(workerThreads, 1);
+        this.logger = logger;
+    }
+
+    /**
+     * @param pacing what to do about ticks that miss their deadline in real time. Call before the clock starts.
+     */
+    public void setPacing(Pacing pacing) {
+        this.pacing = pacing;
     }
 
     /**
@@ -83,6 +168,8 @@ public class Clock {
      *
      * @param runningSeconds          the total time in seconds.
      * @param millisecondsOfOneSecond define the milliseconds of one second.
+     *                                0 or less ticks as fast as possible,
+     *                                see {@link #MAX_SPEED}.
      * @return true if the clock is started successfully,
      * false if the clock is already started.
      */
@@ -91,11 +178,39 @@ public class Clock {
             return false;
         }
         this.totalTicks = runningSeconds;
+        if (workerThreads > 1) {
+            startWorkers();
+        }
         executorService = Executors.newSingleThreadScheduledExecutor();
-        future = executorService.scheduleAtFixedRate(
-            new Ticker(this), 0, millisecondsOfOneSecond, TimeUnit.MILLISECONDS
-        );
         isRunning = true;
+        startNanos = System.nanoTime();
+        periodNanos = Math.max(millisecondsOfOneSecond, 0) * 1_000_000L;
+        currentPeriodNanos = periodNanos;
+        longestPeriodNanos = periodNanos;
+
+        Ticker ticker = new Ticker(this, workerService, workerTasks);
+        Runnable loop;
+        if (millisecondsOfOneSecond <= MAX_SPEED) {
+            // No pacing. The next tick starts as soon as the previous one is done.
+            loop = () -> runFast(ticker);
+        } else {
+            loop = () -> runPaced(ticker);
+        }
+
+        ScheduledExecutorService executor = executorService;
+        ExecutorService workers = workerService;
+        future = executor.schedule(() -> {
+            tickerThread = Thread.currentThread();
+            try {
+                loop.run();
+            } finally {
+                // No tick is under way any more: only now are the threads let go.
+                if (workers != null) {
+                    workers.shutdown();
+                }
+                executor.shutdown();
+            }
+        }, 0, TimeUnit.MILLISECONDS);
         return true;
     }
 
@@ -104,7 +219,211 @@ public class Clock {
     }
 
     /**
-     * Force the background thread to stop ticking immediately and notify to listeners.
+     * Tick as fast as possible. The tick times go into a histogram of this thread's own,
+     * one clock read per tick and no lock, and are published as the clock stops.
+     */
+    private void runFast(Ticker ticker) {
+        LatencyHistogram micros = new LatencyHistogram();
+        long begin = System.nanoTime();
+        try {
+            while (isRunning) {
+                ticker.run();
+                long end = System.nanoTime();
+                micros.record((int) Math.min((end - begin) / 1000, Integer.MAX_VALUE));
+                begin = end;
+            }
+        } finally {
+            synchronized (pacingLock) {
+                tickMicros.merge(micros);
+            }
+        }
+    }
+
+    /**
+     * Tick on the deadlines of the period, one tick per deadline, and deal with those missed as the pacing says.
+     */
+    private void runPaced(Ticker ticker) {
+        long deadline = startNanos;
+        int coalesced = 0;
+        // Tick time of SLOW_DOWN, smoothed over the last ticks or so.
+        long averageNanos = 0;
+        while (isRunning && !Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            if (now < deadline) {
+                LockSupport.parkNanos(deadline - now);
+                continue;
+            }
+
+            ticker.run();
+            long done = System.nanoTime();
+            long execution = done - now;
+            recordTick(now - deadline, execution);
+
+            long period = currentPeriodNanos;
+            if (pacing == Pacing.SLOW_DOWN) {
+                // A quarter to spare, never faster than configured.
+                averageNanos += (execution - averageNanos) / 8;
+                period = Math.max(periodNanos, averageNanos + averageNanos / 4);
+                currentPeriodNanos = period;
+            }
+            deadline += period;
+            if (done <= deadline) {
+                coalesced = 0;
+                continue;
+            }
+
+            synchronized (pacingLock) {
+                ++missedDeadlines;
+                if (missedDeadlineCounter != null) {
+                    missedDeadlineCounter.increment();
+                }
+                boolean isGivingUp = switch (pacing) {
+                    case CATCH_UP -> false;
+                    case DROP, SLOW_DOWN -> true;
+                    case COALESCE -> ++coalesced > MAX_COALESCED;
+                };
+                if (isGivingUp) {
+                    // The next deadline still ahead.
+                    long missed = (done - deadline) / period + 1;
+                    deadline += missed * period;
+                    droppedDeadlines += missed;
+                    coalesced = 0;
+                    if (pacing == Pacing.DROP) {
+                        // Never the last tick, which ends the run.
+                        int ticks = (int) Math.min(missed, Math.max(totalTicks - 1 - tick, 0));
+                        tick += ticks;
+                        droppedTicks += ticks;
+                    }
+                }
+                longestPeriodNanos = Math.max(longestPeriodNanos, period);
+            }
+        }
+    }
+
+    private void recordTick(long lateNanos, long executionNanos) {
+        synchronized (pacingLock) {
+            tickMicros.record((int) Math.min(executionNanos / 1000, Integer.MAX_VALUE));
+            lateMicros.record((int) Math.min(lateNanos / 1000, Integer.MAX_VALUE));
+        }
+        if (tickCounter == null) {
+            return;
+        }
+        long lag = lateNanos / 1000;
+        lagMicros = lag;
+        maxLagMicros.accumulate(lag);
+        if (lateNanos >= currentPeriodNanos) {
+            lateTickCounter.increment();
+        }
+    }
+
+    /**
+     * @return the ticks that ended after the deadline of the next one.
+     */
+    public long getMissedDeadlines() {
+        synchronized (pacingLock) {
+            return missedDeadlines;
+        }
+    }
+
+    /**
+     * @return the deadlines given up, by DROP, COALESCE or SLOW_DOWN.
+     */
+    public long getDroppedDeadlines() {
+        synchronized (pacingLock) {
+            return droppedDeadlines;
+        }
+    }
+
+    /**
+     * @return the ticks DROP jumped over: simulated seconds no listener saw.
+     */
+    public long getDroppedTicks() {
+        synchronized (pacingLock) {
+            return droppedTicks;
+        }
+    }
+
+    /**
+     * @return a copy of the time the ticks took, in microseconds. As fast as possible, only once the clock stopped.
+     */
+    public LatencyHistogram getTickMicros() {
+        synchronized (pacingLock) {
+            LatencyHistogram copy = new LatencyHistogram();
+            copy.merge(tickMicros);
+            return copy;
+        }
+    }
+
+    /**
+     * @return a copy of how late the ticks started against their deadline, in microseconds. Empty if not in real time.
+     */
+    public LatencyHistogram getLateMicros() {
+        synchronized (pacingLock) {
+            LatencyHistogram copy = new LatencyHistogram();
+            copy.merge(lateMicros);
+            return copy;
+        }
+    }
+
+    /**
+     * @return the wall time of one simulated second right now, in nanoseconds. Only SLOW_DOWN changes it.
+     */
+    public long getCurrentPeriodNanos() {
+        return currentPeriodNanos;
+    }
+
+    /**
+     * Report how well the clock kept its pace, and whether real-time results hold.
+     */
+    public void printReport(Logger logger, String name) {
+        synchronized (pacingLock) {
+            logger.loggingMutex.lock();
+
+            long ticks = tickMicros.getCount();
+            logger.info("%s (%s). Report: ", name, periodNanos == 0 ? "as fast as possible" : pacing);
+            logger.info("\t        Tick time: p50 %d, p99 %d, max %d microseconds",
+                tickMicros.getPercentile(50), tickMicros.getPercentile(99), tickMicros.getMax());
+            if (periodNanos > 0) {
+                logger.info("\t     Tick started: p50 %d, p99 %d, max %d microseconds late",
+                    lateMicros.getPercentile(50), lateMicros.getPercentile(99), lateMicros.getMax());
+                logger.info("\t Missed deadlines: %d of %d ticks, %d given up",
+                    missedDeadlines, ticks, droppedDeadlines);
+                logger.info("\t   Longest period: %.3f ms per second, %.3f configured",
+                    longestPeriodNanos / 1e6, periodNanos / 1e6);
+                // Simulated time is right whatever the pacing but DROP. What is timed by the wall clock is not.
+                if (droppedTicks > 0) {
+                    logger.info("\tDropped %d ticks: the simulation left those seconds out, its results do not hold.",
+                        droppedTicks);
+                } else if (missedDeadlines == 0) {
+                    logger.info("\tKept pace: real-time results hold.");
+                } else {
+                    logger.info("\tFell behind: the simulation holds, but live presses, hardware and other clocks "
+                        + "saw it run slower or in bursts.");
+                }
+            }
+
+            logger.loggingMutex.unlock();
+        }
+    }
+
+    /**
+     * Publish the ticks, and how late they start against their deadline:
+     * the last and the largest lag, the ticks later than a whole period, and the deadlines missed.
+     * Call before the clock starts.
+     *
+     * @param prefix e.g. "clock.".
+     */
+    public void setMetrics(MetricsRegistry metrics, String prefix) {
+        tickCounter = metrics.counter(prefix + "ticks");
+        lateTickCounter = metrics.counter(prefix + "lateTicks");
+        maxLagMicros = metrics.maximum(prefix + "maxLagMicros");
+        missedDeadlineCounter = metrics.counter(prefix + "missedDeadlines");
+        metrics.gauge(prefix + "lagMicros", () -> lagMicros);
+        metrics.gauge(prefix + "periodMicros", () -> currentPeriodNanos / 1000);
+    }
+
+    /**
+     * Force the background thread to stop ticking once the tick under way is over, and notify to listeners.
      */
     public synchronized void stop() {
         stopNoNotify();
@@ -115,22 +434,74 @@ public class Clock {
     }
 
     /**
-     * Blocks until running time is up.
+     * Blocks until running time is up, and the clock thread is done with its last tick.
      */
     public void waitForStop() {
+        ScheduledExecutorService executor = executorService;
+        if (executor == null) {
+            return;
+        }
         try {
-            future.get();
-        } catch (Exception e) {
-            // ignored.
+            // The clock thread shuts the executor down as it leaves its loop.
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Stop ticking once the tick under way is over. Safe from any thread, the workers included:
+     * the clock thread lets the threads go itself, as it leaves its loop.
+     */
     private void stopNoNotify() {
-        future.cancel(true);
-        executorService.shutdown();
-        executorService = null;
-        future = null;
         isRunning = false;
+        // Out of waiting for the next deadline.
+        Thread thread = tickerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Split the listeners into one fixed partition per worker,
+     * so that each listener always runs on the same worker.
+     */
+    private void startWorkers() {
+        int partitions = Math.min(workerThreads, Math.max(onTickListeners.size(), 1));
+        workerService = Executors.newFixedThreadPool(partitions);
+        workerTasks = new ArrayList<>();
+
+        for (int p = 0; p < partitions; p++) {
+            List<OnTickListener> partition = new ArrayList<>();
+            for (int i = p; i < onTickListeners.size(); i += partitions) {
+                partition.add(onTickListeners.get(i));
+            }
+            workerTasks.add(() -> {
+                notifyTick(partition, tick >= totalTicks);
+                return null;
+            });
+        }
+    }
+
+    private void notifyTick(List<OnTickListener> listeners, boolean timeUp) {
+        listeners.forEach(
+            listener -> {
+                try {
+                    listener.onTick(timeUp);
+                }
+                catch (Exception e) {
+                    logger.error("Error in elevator: %s.", e);
+                    logger.error("\tStopping the elevator.");
+                    stopNoNotify();
+                }
+            }
+        );
+    }
+
+    private void countTick() {
+        if (tickCounter != null) {
+            tickCounter.increment();
+        }
     }
 
     /**
@@ -149,23 +520,20 @@ public class Clock {
         return totalTicks;
     }
 
-    /**
-     * Destructive method.
-     * @param seconds the number of seconds to be marked as `skipped`.
-     */
-    public synchronized void skip(int seconds) {
-        tickSkipRemaining += seconds;
-    }
-
     public boolean isRunning() {
         return isRunning;
     }
 
     private static class Ticker implements Runnable {
         Clock instance;
+        // Read once, so a stop on another thread never pulls them away mid-tick. Null without workers.
+        ExecutorService workerService;
+        List<Callable<Void>> workerTasks;
 
-        public Ticker(Clock instance) {
+        public Ticker(Clock instance, ExecutorService workerService, List<Callable<Void>> workerTasks) {
             this.instance = instance;
+            this.workerService = workerService;
+            this.workerTasks = workerTasks;
         }
 
         @Override
@@ -175,21 +543,19 @@ public class Clock {
             }
 
             instance.tick();
+            instance.countTick();
             boolean timeUp = instance.getTick() >= instance.getTotalTicks();
-            boolean isSkippingTick = --instance.tickSkipRemaining > 0;
 
-            instance.onTickListeners.forEach(
-                listener -> {
-                    try {
-                        listener.onTick(timeUp, isSkippingTick);
-                    }
-                    catch (Exception e) {
-                        Logger.error("Error in elevator: %s.", e);
-                        Logger.error("\tStopping the elevator.");
-                        instance.stopNoNotify();
-                    }
+            if (workerTasks == null) {
+                instance.notifyTick(instance.onTickListeners, timeUp);
+            } else {
+                // Acts as the barrier: the tick is over once every worker is done.
+                try {
+                    workerService.invokeAll(workerTasks);
+                } catch (InterruptedException e) {
+                    return;
                 }
-            );
+            }
 
             // Time is up?
             if (timeUp) {
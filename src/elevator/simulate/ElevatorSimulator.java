@@ -8,47 +8,251 @@ package elevator.simulate;
 
 import elevator.ElevatorService;
 import elevator.Floor;
+import elevator.HallCallBoard;
 import elevator.SimulationConfig;
 
-import java.util.ArrayList;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 public final class ElevatorSimulator {
     private final ElevatorService service;
+    private final HallCallBoard board;
     private final List<Floor> floors;
     private final int numElevators;
     private final int elevatorCapacity;
+    private final SimulationConfig config;
+    private final Logger logger;
+
+    // Wall-clock duration of the last run.
+    private long wallNanos;
+
+    // Where the binary event trace goes. Null if not traced.
+    private Path traceFile;
+
+    // Live metrics, and how often they are dumped to the logger. Null if not measured.
+    private MetricsRegistry metrics;
+    private int metricsDumpMillis;
+
+    // Numbers by window as they happen. Null if not taken.
+    private StreamingStats stats;
 
     // Constructor
     public ElevatorSimulator(int numFloors, int numElevators, int elevatorCapacity, SimulationConfig config) {
+        this(numFloors, numElevators, elevatorCapacity, config, Logger.getDefault());
+    }
+
+    public ElevatorSimulator(
+        int numFloors, int numElevators, int elevatorCapacity, SimulationConfig config, Logger logger
+    ) {
         this.numElevators = numElevators;
         this.elevatorCapacity = elevatorCapacity;
+        this.config = config;
+        this.logger = logger;
 
         // Generate floors.
-        this.floors = new ArrayList<>();
-        for (int i = 0; i < numFloors; i++) {
-            floors.add(new Floor());
-        }
+        this.board = new HallCallBoard(numFloors);
+        this.floors = board.getFloors();
 
         // Create elevators.
-        this.service = new ElevatorService(floors, numElevators, elevatorCapacity, config);
+        this.service = new ElevatorService(board, numElevators, elevatorCapacity, config, logger);
     }
 
     /**
      * Run and block until the simulation is complete.
      */
     public void run() {
-        Logger.info(
+        logger.setTimeSource(service::getTime);
+        logger.info(
             "=== Simulation started with elevators=%d, capacity=%d ===",
             numElevators, elevatorCapacity
         );
 
+        TraceWriter trace = openTrace();
+        if (metrics != null && metricsDumpMillis > 0) {
+            metrics.startDumping(logger, metricsDumpMillis);
+        }
+
+        long startNanos = System.nanoTime();
         service.start();
         service.waitForStop();
+        wallNanos = System.nanoTime() - startNanos;
 
-        Logger.info(
-            "=== Simulation ended ===",
-            numElevators, elevatorCapacity
+        closeTrace(trace);
+        closeTraffic();
+        if (config.millisecondsPerSecond() > 0) {
+            reportPacing();
+        }
+        if (stats != null) {
+            stats.finish();
+        }
+        if (metrics != null && metricsDumpMillis > 0) {
+            metrics.stopDumping();
+            metrics.dump(logger);
+        }
+
+        logger.info(
+            "=== Simulation ended: %d simulated seconds in %.3f wall seconds (%.1f simulated seconds per second) ===",
+            config.runningSeconds(), wallNanos / 1e9, getSimulatedSecondsPerWallSecond()
         );
+        SimulationResult result = getResult();
+        logger.info(
+            "Building wait time: p50 %d, p90 %d, p99 %d, max %d seconds. Ride time: p50 %d, p99 %d seconds.",
+            result.waitP50Seconds(), result.waitP90Seconds(), result.waitP99Seconds(),
+            result.waitMaxSeconds(), result.rideP50Seconds(), result.rideP99Seconds()
+        );
+        logger.setTimeSource(null);
+        logger.flush();
+    }
+
+    /**
+     * Run the first seconds and stop there, e.g. to warm the building up before a snapshot.
+     * Event mode only. {@link #run()} goes on from there to the running time.
+     */
+    public void runUntil(int seconds) {
+        logger.setTimeSource(service::getTime);
+        service.runUntil(seconds);
+        logger.setTimeSource(null);
+        logger.flush();
+    }
+
+    /**
+     * Take the state of the building, while not running. Event mode only.
+     * The passenger logs and the metrics so far are not part of it.
+     */
+    public SimulationSnapshot snapshot() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            service.writeState(out);
+        } catch (IOException e) {
+            // Not thrown by a byte array.
+            throw new IllegalStateException(e);
+        }
+        return new SimulationSnapshot(floors.size(), numElevators, elevatorCapacity, service.getTime(), bytes.toByteArray());
+    }
+
+    /**
+     * Go on from a snapshot of a building of the same size, before running.
+     * The config of this simulator applies from there on, e.g. another dispatch strategy.
+     * {@link #run()} then runs from the time of the snapshot to the running time.
+     *
+     * @throws IOException if the snapshot is damaged.
+     */
+    public void restore(SimulationSnapshot snapshot) throws IOException {
+        if (snapshot.getNumFloors() != floors.size()
+            || snapshot.getNumElevators() != numElevators
+            || snapshot.getElevatorCapacity() != elevatorCapacity) {
+            throw new IllegalArgumentException(
+                "The snapshot is of %d floors, %d elevators of capacity %d.".formatted(
+                    snapshot.getNumFloors(), snapshot.getNumElevators(), snapshot.getElevatorCapacity()
+                )
+            );
+        }
+        try (DataInputStream in = snapshot.openState()) {
+            service.readState(in);
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Damaged simulation snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param traceFile where to write the binary event trace of the next run, see {@link TraceReplay}.
+     *                  Null to not trace.
+     */
+    public void setTraceFile(Path traceFile) {
+        this.traceFile = traceFile;
+    }
+
+    /**
+     * Measure the next run, see {@link MetricsRegistry}. Only once per simulator.
+     *
+     * @param dumpMillis how often to dump the metrics to the logger, in wall milliseconds.
+     *                   0 to never dump, e.g. if only read over JMX.
+     */
+    public void setMetrics(MetricsRegistry metrics, int dumpMillis) {
+        this.metrics = metrics;
+        this.metricsDumpMillis = dumpMillis;
+        service.setMetrics(metrics);
+    }
+
+    /**
+     * Take the numbers of the next run as they happen, reported by window, see {@link StreamingStats}.
+     * Only once per simulator.
+     */
+    public void setStreamingStats(StreamingStats stats) {
+        this.stats = stats;
+        service.setStreamingStats(stats);
+    }
+
+    private void reportPacing() {
+        List<Clock> clocks = service.getClocks();
+        for (int i = 0; i < clocks.size(); i++) {
+            clocks.get(i).printReport(logger, clocks.size() == 1 ? "Clock" : "Clock of elevator #" + i);
+        }
+    }
+
+    private TraceWriter openTrace() {
+        if (traceFile == null) {
+            return null;
+        }
+        try {
+            TraceWriter trace = new TraceWriter(traceFile);
+            service.setTraceWriter(trace);
+            return trace;
+        } catch (IOException e) {
+            logger.error("Failed to open trace %s: %s", traceFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private void closeTrace(TraceWriter trace) {
+        if (trace == null) {
+            return;
+        }
+        service.setTraceWriter(null);
+        try {
+            trace.close();
+            logger.info("Trace: %d events written to %s.", trace.getRecordCount(), traceFile);
+        } catch (IOException e) {
+            logger.error("Failed to close trace %s: %s", traceFile, e.getMessage());
+        }
+    }
+
+    private void closeTraffic() {
+        if (service.getAgents() != null) {
+            service.getAgents().close();
+        }
+        if (service.getTraffic() == null) {
+            return;
+        }
+        try {
+            service.getTraffic().close();
+        } catch (IOException e) {
+            logger.error("Failed to close the passenger source: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the speed of the last run. 0 if not run yet.
+     */
+    public double getSimulatedSecondsPerWallSecond() {
+        if (wallNanos == 0) {
+            return 0;
+        }
+        return config.runningSeconds() / (wallNanos / 1e9);
+    }
+
+    /**
+     * @return the building-wide numbers of the last run.
+     */
+    public SimulationResult getResult() {
+        return SimulationResult.of(service.getElevators(), config.runningSeconds(), service.getWaiting());
+    }
+
+    public ElevatorService getService() {
+        return service;
     }
 }
@@ -0,0 +1,276 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Discrete-event driver.
+ * Instead of firing every simulated second like {@link Clock},
+ * the simulated time jumps straight to the next pending event.
+ */
+public class EventScheduler {
+    public enum EventType {
+        // A random outside request is generated.
+        ARRIVAL,
+
+        // An idle elevator decides where to go next.
+        DISPATCH,
+
+        // The processes that finish a phase of the elevator.
+        FLOOR_REACHED, DOOR_OPENED, DOOR_CLOSED, BOARDING_COMPLETE
+    }
+
+    public interface OnEventListener {
+        void onEvent(EventType type);
+    }
+
+    private static final class Event implements Comparable<Event> {
+        final int time;
+        final long sequence;
+        final EventType type;
+        final OnEventListener listener;
+
+        Event(int time, long sequence, EventType type, OnEventListener listener) {
+            this.time = time;
+            this.sequence = sequence;
+            this.type = type;
+            this.listener = listener;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            // Same time? First scheduled, first fired.
+            if (time != other.time) {
+                return Integer.compare(time, other.time);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    protected int time;
+    protected int totalSeconds;
+    protected long sequence;
+    protected long eventsProcessed;
+    protected volatile boolean isRunning;
+    protected PriorityQueue<Event> queue;
+    protected ArrayList<OnEventListener> parkedListeners;
+    protected ArrayList<Clock.OnTickDoneListener> onTickDoneListeners;
+    protected final Logger logger;
+
+    public EventScheduler() {
+        this(Logger.getDefault());
+    }
+
+    public EventScheduler(Logger logger) {
+        this.logger = logger;
+        time = 0;
+        totalSeconds = 0;
+        sequence = 0;
+        eventsProcessed = 0;
+        queue = new PriorityQueue<>();
+        parkedListeners = new ArrayList<>();
+        onTickDoneListeners = new ArrayList<>();
+    }
+
+    /**
+     * @param listener
+     * @return true if the listener is added successfully,
+     * false if the listener was already added.
+     */
+    public boolean addOnTickDoneListener(Clock.OnTickDoneListener listener) {
+        if (onTickDoneListeners.contains(listener)) {
+            return false;
+        }
+        return onTickDoneListeners.add(listener);
+    }
+
+    /**
+     * Schedule an event relative to the current simulated time.
+     *
+     * @param delaySeconds seconds from now. 0 fires at the current time,
+     *                     after the events already scheduled for it.
+     */
+    public void schedule(int delaySeconds, EventType type, OnEventListener listener) {
+        queue.add(new Event(time + delaySeconds, sequence++, type, listener));
+    }
+
+    /**
+     * Put the listener to sleep until {@link #signalParked()} is called.
+     * Used by idle elevators that have nothing to do until a new request comes.
+     */
+    public void park(OnEventListener listener) {
+        if (!parkedListeners.contains(listener)) {
+            parkedListeners.add(listener);
+        }
+    }
+
+    /**
+     * Wake up all parked listeners with a {@link EventType#DISPATCH} event at the current time.
+     */
+    public void signalParked() {
+        for (OnEventListener listener : parkedListeners) {
+            schedule(0, EventType.DISPATCH, listener);
+        }
+        parkedListeners.clear();
+    }
+
+    /**
+     * Process events in time order and block until the running time is up or stopped.
+     *
+     * @param runningSeconds the total time in seconds.
+     * @return true if the simulation ran,
+     * false if the scheduler is already running.
+     */
+    public boolean run(int runningSeconds) {
+        synchronized (this) {
+            if (isRunning) {
+                return false;
+            }
+            isRunning = true;
+        }
+        this.totalSeconds = runningSeconds;
+
+        Clock.OnTickDoneListener.Reason reason = process(totalSeconds)
+            ? Clock.OnTickDoneListener.Reason.TIME_IS_UP
+            : Clock.OnTickDoneListener.Reason.CANCELLED_BY_USER;
+        isRunning = false;
+
+        onTickDoneListeners.forEach(listener -> listener.onTickDone(reason));
+        return true;
+    }
+
+    /**
+     * Process the events up to the given second and return there, without notifying the listeners.
+     * {@link #run(int)} goes on from where this stopped.
+     *
+     * @return true if the time was reached,
+     * false if stopped on the way or the scheduler is already running.
+     */
+    public boolean runUntil(int seconds) {
+        synchronized (this) {
+            if (isRunning) {
+                return false;
+            }
+            isRunning = true;
+        }
+        boolean isReached = process(seconds);
+        isRunning = false;
+        return isReached;
+    }
+
+    /**
+     * @return true if the time was reached, false if stopped.
+     */
+    private boolean process(int untilSeconds) {
+        while (isRunning && !queue.isEmpty() && queue.peek().time <= untilSeconds) {
+            Event event = queue.poll();
+            time = event.time;
+            ++eventsProcessed;
+
+            try {
+                event.listener.onEvent(event.type);
+            }
+            catch (Exception e) {
+                logger.error("Error in elevator: %s.", e);
+                logger.error("\tStopping the elevator.");
+                isRunning = false;
+            }
+        }
+        time = untilSeconds;
+        return isRunning;
+    }
+
+    /**
+     * Write the time, the pending events and the parked listeners. Call while not running.
+     *
+     * @param idOf the number a listener is known by in the snapshot.
+     */
+    public void writeState(DataOutput out, ToIntFunction<OnEventListener> idOf) throws IOException {
+        out.writeInt(time);
+        out.writeLong(sequence);
+        out.writeLong(eventsProcessed);
+        out.writeInt(queue.size());
+        for (Event event : queue) {
+            out.writeInt(event.time);
+            out.writeLong(event.sequence);
+            out.writeByte(event.type.ordinal());
+            out.writeInt(idOf.applyAsInt(event.listener));
+        }
+        out.writeInt(parkedListeners.size());
+        for (OnEventListener listener : parkedListeners) {
+            out.writeInt(idOf.applyAsInt(listener));
+        }
+    }
+
+    /**
+     * Replace the time, the pending events and the parked listeners with those written by {@link #writeState}.
+     * Same time, same sequence: the events fire in the same order as they would have.
+     *
+     * @param listenerOf the listener known by a number in the snapshot.
+     */
+    public void readState(DataInput in, IntFunction<OnEventListener> listenerOf) throws IOException {
+        time = in.readInt();
+        sequence = in.readLong();
+        eventsProcessed = in.readLong();
+
+        queue.clear();
+        int events = in.readInt();
+        EventType[] types = EventType.values();
+        for (int i = 0; i < events; i++) {
+            int eventTime = in.readInt();
+            long eventSequence = in.readLong();
+            EventType type = types[in.readByte()];
+            queue.add(new Event(eventTime, eventSequence, type, listenerOf.apply(in.readInt())));
+        }
+
+        parkedListeners.clear();
+        int parked = in.readInt();
+        for (int i = 0; i < parked; i++) {
+            parkedListeners.add(listenerOf.apply(in.readInt()));
+        }
+    }
+
+    /**
+     * Publish the simulated time, the events processed and the events queued, under "scheduler.".
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        // Read from another thread. A slightly stale value is fine.
+        metrics.gauge("scheduler.time", () -> time);
+        metrics.gauge("scheduler.eventsProcessed", () -> eventsProcessed);
+        metrics.gauge("scheduler.eventsQueued", () -> queue.size());
+    }
+
+    /**
+     * Stop processing events. The listeners are notified once {@link #run(int)} returns.
+     */
+    public void stop() {
+        isRunning = false;
+    }
+
+    public int getTime() {
+        return time;
+    }
+
+    public int getTotalSeconds() {
+        return totalSeconds;
+    }
+
+    public long getEventsProcessed() {
+        return eventsProcessed;
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+}
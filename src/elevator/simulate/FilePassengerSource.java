@@ -0,0 +1,348 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Passengers replayed from a log file, e.g. a badge or button-press export, streamed a buffer at a time.
+ * Memory stays the same however big the file is: one read buffer and one line.
+ * <p>
+ * One passenger per line, in time order:
+ * <pre>
+ * CSV:   time,origin,destination[,size]   e.g. 28800,0,12 or 08:00:00,0,12,3
+ * JSONL: {"time": 28800, "origin": 0, "destination": 12, "size": 3}
+ *        ("timestamp", "from", "to" and "party" work too)
+ * </pre>
+ * The size of the party is optional, 1 by default.
+ * Times are seconds, or H:MM:SS. Lines that are not a passenger, e.g. a CSV header, are skipped and counted.
+ * A passenger earlier than the one before is taken as arriving at the same time.
+ */
+public class FilePassengerSource implements PassengerSource {
+    // Pass as the time origin to start the simulation with the first passenger.
+    public static final long FIRST_RECORD = Long.MIN_VALUE;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int MAX_LINE_BYTES = 1 << 12;
+
+    private static final byte[][] TIME_KEYS = keys("time", "timestamp");
+    private static final byte[][] ORIGIN_KEYS = keys("origin", "from");
+    private static final byte[][] DESTINATION_KEYS = keys("destination", "to");
+    private static final byte[][] SIZE_KEYS = keys("size", "party");
+
+    public enum Format {
+        CSV, JSONL;
+
+        /**
+         * @return JSONL for ".jsonl" and ".json" files, CSV otherwise.
+         */
+        public static Format of(Path path) {
+            String name = path.getFileName().toString().toLowerCase();
+            return name.endsWith(".jsonl") || name.endsWith(".json") ? JSONL : CSV;
+        }
+    }
+
+    private final Path path;
+    private final Format format;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final byte[] line = new byte[MAX_LINE_BYTES];
+    private int lineLength;
+    private boolean isEndOfFile;
+
+    // The file time of simulated second 0.
+    private long timeOrigin;
+
+    // The next passenger. Only valid if hasNext.
+    private boolean hasNext;
+    private int time;
+    private int origin;
+    private int destination;
+    private int partySize;
+
+    private long lines;
+    private long skippedLines;
+
+    // Where the last field parsed ended, or -1 if it was not a number.
+    private int fieldEnd;
+
+    public FilePassengerSource(Path path) throws IOException {
+        this(path, Format.of(path), FIRST_RECORD);
+    }
+
+    /**
+     * @param timeOrigin the file time of simulated second 0, or {@link #FIRST_RECORD}.
+     */
+    public FilePassengerSource(Path path, Format format, long timeOrigin) throws IOException {
+        this.path = path;
+        this.format = format;
+        this.timeOrigin = timeOrigin;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer.flip();
+    }
+
+    @Override
+    public int peekTime() {
+        if (!hasNext) {
+            readNext();
+        }
+        return hasNext ? time : NO_MORE_ARRIVALS;
+    }
+
+    @Override
+    public int peekOrigin() {
+        return origin;
+    }
+
+    @Override
+    public int peekDestination() {
+        return destination;
+    }
+
+    @Override
+    public int peekPartySize() {
+        return partySize;
+    }
+
+    @Override
+    public void pop() {
+        hasNext = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    private void readNext() {
+        int previousTime = time;
+        while (readLine()) {
+            if (parseLine()) {
+                // Out of order: it is here now.
+                time = Math.max(time, previousTime);
+                hasNext = true;
+                return;
+            }
+            ++skippedLines;
+        }
+    }
+
+    /**
+     * @return true if the line is a passenger. Sets its time, origin and destination.
+     */
+    private boolean parseLine() {
+        int timeStart, originStart, destinationStart, sizeStart;
+        if (format == Format.JSONL) {
+            timeStart = findJsonValue(TIME_KEYS);
+            originStart = findJsonValue(ORIGIN_KEYS);
+            destinationStart = findJsonValue(DESTINATION_KEYS);
+            sizeStart = findJsonValue(SIZE_KEYS);
+        } else {
+            timeStart = 0;
+            originStart = nextCsvField(timeStart);
+            destinationStart = nextCsvField(originStart);
+            sizeStart = nextCsvField(destinationStart);
+        }
+        if (timeStart < 0 || originStart < 0 || destinationStart < 0) {
+            return false;
+        }
+
+        long fileTime = parseNumber(timeStart, true);
+        if (fieldEnd < 0) {
+            return false;
+        }
+        long from = parseNumber(originStart, false);
+        if (fieldEnd < 0) {
+            return false;
+        }
+        long to = parseNumber(destinationStart, false);
+        if (fieldEnd < 0 || from > Integer.MAX_VALUE || to > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        if (timeOrigin == FIRST_RECORD) {
+            timeOrigin = fileTime;
+        }
+        long second = fileTime - timeOrigin;
+        if (second < 0) {
+            return false;
+        }
+        time = (int) Math.min(second, NO_MORE_ARRIVALS - 1);
+        origin = (int) from;
+        destination = (int) to;
+
+        // Optional: a single passenger if missing or unreadable.
+        partySize = 1;
+        if (sizeStart >= 0) {
+            long size = parseNumber(sizeStart, false);
+            if (fieldEnd >= 0 && size > 0) {
+                partySize = (int) Math.min(size, Short.MAX_VALUE);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the start of the field after the one starting at the index, or -1 if none.
+     */
+    private int nextCsvField(int start) {
+        if (start < 0) {
+            return -1;
+        }
+        for (int i = start; i < lineLength; i++) {
+            if (line[i] == ',' || line[i] == ';' || line[i] == '\t') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the start of the value of the first of the keys found, or -1 if none.
+     */
+    private int findJsonValue(byte[][] keys) {
+        for (byte[] key : keys) {
+            for (int i = 0; i + key.length <= lineLength; i++) {
+                if (!matches(key, i)) {
+                    continue;
+                }
+                int j = i + key.length;
+                while (j < lineLength && (line[j] == ' ' || line[j] == '\t')) {
+                    ++j;
+                }
+                if (j < lineLength && line[j] == ':') {
+                    return j + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(byte[] key, int at) {
+        for (int k = 0; k < key.length; k++) {
+            if (line[at + k] != key[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a non-negative integer, optionally quoted, with H:MM:SS allowed for times.
+     * A fraction is dropped. Sets {@link #fieldEnd}, -1 if there is no number.
+     */
+    private long parseNumber(int start, boolean isTime) {
+        int i = start;
+        while (i < lineLength && (line[i] == ' ' || line[i] == '"' || line[i] == '\t')) {
+            ++i;
+        }
+
+        long value = 0;
+        long group = 0;
+        boolean hasDigits = false;
+        for (; i < lineLength; i++) {
+            byte b = line[i];
+            if (b >= '0' && b <= '9') {
+                group = group * 10 + (b - '0');
+                hasDigits = true;
+            } else if (b == ':' && isTime && hasDigits) {
+                value = (value + group) * 60;
+                group = 0;
+            } else {
+                break;
+            }
+        }
+        // Skip a fraction.
+        if (i < lineLength && line[i] == '.') {
+            do {
+                ++i;
+            } while (i < lineLength && line[i] >= '0' && line[i] <= '9');
+        }
+
+        fieldEnd = hasDigits ? i : -1;
+        return value + group;
+    }
+
+    /**
+     * Read the next line into {@link #line}, without its line break.
+     * Lines too long for a passenger are cut short, and then skipped as unreadable.
+     *
+     * @return false at the end of the file.
+     */
+    private boolean readLine() {
+        lineLength = 0;
+        boolean hasAny = false;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                if (isEndOfFile || !fill()) {
+                    if (hasAny) {
+                        ++lines;
+                    }
+                    return hasAny;
+                }
+            }
+            hasAny = true;
+
+            byte[] bytes = buffer.array();
+            int position = buffer.position();
+            int limit = buffer.limit();
+            for (int i = position; i < limit; i++) {
+                byte b = bytes[i];
+                if (b == '\n') {
+                    buffer.position(i + 1);
+                    ++lines;
+                    if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                        --lineLength;
+                    }
+                    return true;
+                }
+                if (lineLength < MAX_LINE_BYTES) {
+                    line[lineLength++] = b;
+                }
+            }
+            buffer.position(limit);
+        }
+    }
+
+    private boolean fill() {
+        buffer.clear();
+        try {
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            if (read < 0) {
+                isEndOfFile = true;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read passengers from " + path, e);
+        }
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    private static byte[][] keys(String... names) {
+        byte[][] keys = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            keys[i] = ('"' + names[i] + '"').getBytes(StandardCharsets.US_ASCII);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Counts of non-negative int values, e.g. seconds waited, in fixed memory.
+ * <p>
+ * Log-linear buckets: values below 32 are exact, and every power of two above
+ * is split into 16 buckets, so a percentile is off by less than 1/16 of its value.
+ * Histograms of the same layout merge by adding their counts, e.g. cars into a building.
+ * Not thread-safe.
+ */
+public class LatencyHistogram {
+    private static final int EXACT_BITS = 5;
+    private static final int EXACT_VALUES = 1 << EXACT_BITS;
+    private static final int SUB_BUCKETS = EXACT_VALUES / 2;
+    private static final int BUCKETS = EXACT_VALUES + (31 - EXACT_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private int max;
+
+    /**
+     * @param value negative values count as 0.
+     */
+    public void record(int value) {
+        value = Math.max(value, 0);
+        ++counts[indexOf(value)];
+        ++count;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Record the value as many times at once, e.g. once for every second it held.
+     */
+    public void record(int value, long times) {
+        if (times <= 0) {
+            return;
+        }
+        value = Math.max(value, 0);
+        counts[indexOf(value)] += times;
+        count += times;
+        sum += value * times;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add the counts of another histogram to this one.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * Write the counts, only the buckets in use.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeLong(sum);
+        out.writeInt(max);
+        int used = 0;
+        for (long bucket : counts) {
+            used += bucket != 0 ? 1 : 0;
+        }
+        out.writeShort(used);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                out.writeShort(i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Replace the counts with those written by {@link #writeState}.
+     */
+    public void readState(DataInput in) throws IOException {
+        reset();
+        count = in.readLong();
+        sum = in.readLong();
+        max = in.readInt();
+        int used = in.readShort();
+        for (int i = 0; i < used; i++) {
+            int index = in.readShort();
+            counts[index] = in.readLong();
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return the exact mean. 0 if empty.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile in [0, 100].
+     * @return the highest value of the bucket holding the percentile, never above the max. 0 if empty.
+     */
+    public int getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(percentile / 100 * count), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int indexOf(int value) {
+        if (value < EXACT_VALUES) {
+            return value;
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(value);
+        int shift = exponent - (EXACT_BITS - 1);
+        return EXACT_VALUES + (exponent - EXACT_BITS) * SUB_BUCKETS + ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static int highestValueOf(int index) {
+        if (index < EXACT_VALUES) {
+            return index;
+        }
+        int exponent = (index - EXACT_VALUES) / SUB_BUCKETS + EXACT_BITS;
+        int shift = exponent - (EXACT_BITS - 1);
+        long lowest = (long) ((index - EXACT_VALUES) % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return (int) Math.min(lowest + (1L << shift) - 1, Integer.MAX_VALUE);
+    }
+}
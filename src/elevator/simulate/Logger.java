@@ -6,39 +6,407 @@
 
 package elevator.simulate;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
 
-public class Logger {
-    public static final ReentrantLock loggingMutex = new ReentrantLock();
-    protected static Level loggingLevel = Level.INFO;
+/**
+ * One logger per simulation, so that simulations running side by side
+ * do not compete for one output or one mutex.
+ * <p>
+ * Logging never blocks on the output. The lines go into a lock-free ring buffer,
+ * and a background writer formats them and writes them out in batches.
+ * The level is checked before anything is allocated, and the primitive overloads
+ * defer the boxing of their arguments to the writer.
+ * <p>
+ * Close a logger once done with it, to stop its writer.
+ */
+public class Logger implements Closeable {
+    private static final Logger defaultLogger = new Logger(System.out, Level.INFO);
+    private static final Logger silentLogger = new Logger();
+
+    private static final int RING_CAPACITY = 1 << 13;
+    private static final int MAX_INT_ARGS = 5;
+    private static final int BATCH_BYTES = 1 << 16;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final long WAIT_PARK_NANOS = 50_000;
+    private static final long FLUSH_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    // Held while printing a block of lines that must not interleave, e.g. a report.
+    public final ReentrantLock loggingMutex = new ReentrantLock();
+
+    protected final WritableByteChannel out;
+    protected volatile Level loggingLevel;
+
+    // Simulated seconds for the timestamps. Null to print the wall clock.
+    protected volatile IntSupplier timeSource;
+
+    // The ring buffer. Slot i is free for the producer of claim c when sequences[i] == c,
+    // and ready for the writer when sequences[i] == c + 1.
+    // None of it for the silent logger.
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final Level[] levels;
+    private final long[] timestamps;
+    private final boolean[] isSimulatedTime;
+    private final String[] messages;
+    private final Object[][] args;
+    private final int[] intArgCounts;
+    private final int[] intArgs;
+
+    // Only touched by the writer.
+    private long head;
+    private final StringBuilder line;
+    private final ByteBuffer batch;
+
+    // Guarded by this.
+    private volatile Thread writer;
+    private Thread shutdownHook;
+    private volatile boolean isClosed;
+
+    private volatile boolean isWriterIdle;
+    private final AtomicLong written = new AtomicLong();
+
+    public Logger(PrintStream out, Level loggingLevel) {
+        this(Channels.newChannel(out), loggingLevel);
+    }
+
+    public Logger(WritableByteChannel out, Level loggingLevel) {
+        this.out = out;
+        this.loggingLevel = loggingLevel;
+        this.sequences = new AtomicLongArray(RING_CAPACITY);
+        this.levels = new Level[RING_CAPACITY];
+        this.timestamps = new long[RING_CAPACITY];
+        this.isSimulatedTime = new boolean[RING_CAPACITY];
+        this.messages = new String[RING_CAPACITY];
+        this.args = new Object[RING_CAPACITY][];
+        this.intArgCounts = new int[RING_CAPACITY];
+        this.intArgs = new int[RING_CAPACITY * MAX_INT_ARGS];
+        this.line = new StringBuilder();
+        this.batch = ByteBuffer.allocate(BATCH_BYTES);
+        for (int i = 0; i < RING_CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // The silent logger: no output, no ring, never a writer.
+    private Logger() {
+        this.out = null;
+        this.loggingLevel = Level.NONE;
+        this.sequences = null;
+        this.levels = null;
+        this.timestamps = null;
+        this.isSimulatedTime = null;
+        this.messages = null;
+        this.args = null;
+        this.intArgCounts = null;
+        this.intArgs = null;
+        this.line = null;
+        this.batch = null;
+    }
+
+    /**
+     * @return the logger printing to the standard output.
+     */
+    public static Logger getDefault() {
+        return defaultLogger;
+    }
+
+    /**
+     * @return the logger printing nothing. Shared, so its level cannot be changed.
+     */
+    public static Logger silent() {
+        return silentLogger;
+    }
 
     public static void setLoggingLevel(Level level) {
+        defaultLogger.setLevel(level);
+    }
+
+    public void setLevel(Level level) {
+        if (this == silentLogger) {
+            throw new UnsupportedOperationException("The silent logger prints nothing.");
+        }
         loggingLevel = level;
     }
 
-    public static synchronized void info(String message, Object... args) {
-        log(Level.INFO, message, args);
+    public Level getLevel() {
+        return loggingLevel;
     }
 
-    public static synchronized void error(String message, Object... args) {
-        log(Level.ERROR, message, args);
+    /**
+     * @param timeSource the current simulated second, read when a line is logged.
+     *                   Null to print the wall clock instead. Ignored by the silent logger.
+     */
+    public void setTimeSource(IntSupplier timeSource) {
+        if (this != silentLogger) {
+            this.timeSource = timeSource;
+        }
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.getValue() <= loggingLevel.getValue();
+    }
+
+    public void info(String message, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, message, args, 0, 0, 0, 0, 0, 0);
+        }
     }
 
-    public static synchronized void verbose(String message, Object... args) {
-        log(Level.VERBOSE, message, args);
+    public void error(String message, Object... args) {
+        if (isEnabled(Level.ERROR)) {
+            enqueue(Level.ERROR, message, args, 0, 0, 0, 0, 0, 0);
+        }
+    }
+
+    public void verbose(String message, Object... args) {
+        if (isEnabled(Level.VERBOSE)) {
+            enqueue(Level.VERBOSE, message, args, 0, 0, 0, 0, 0, 0);
+        }
     }
 
-    private static void log(Level level, String message, Object... args) {
-        if (level.getValue() > loggingLevel.getValue()) {
+    public void verbose(String message, int arg0) {
+        if (isEnabled(Level.VERBOSE)) {
+            enqueue(Level.VERBOSE, message, null, 1, arg0, 0, 0, 0, 0);
+        }
+    }
+
+    public void verbose(String message, int arg0, int arg1) {
+        if (isEnabled(Level.VERBOSE)) {
+            enqueue(Level.VERBOSE, message, null, 2, arg0, arg1, 0, 0, 0);
+        }
+    }
+
+    public void verbose(String message, int arg0, int arg1, int arg2) {
+        if (isEnabled(Level.VERBOSE)) {
+            enqueue(Level.VERBOSE, message, null, 3, arg0, arg1, arg2, 0, 0);
+        }
+    }
+
+    public void verbose(String message, int arg0, int arg1, int arg2, int arg3) {
+        if (isEnabled(Level.VERBOSE)) {
+            enqueue(Level.VERBOSE, message, null, 4, arg0, arg1, arg2, arg3, 0);
+        }
+    }
+
+    public void verbose(String message, int arg0, int arg1, int arg2, int arg3, int arg4) {
+        if (isEnabled(Level.VERBOSE)) {
+            enqueue(Level.VERBOSE, message, null, 5, arg0, arg1, arg2, arg3, arg4);
+        }
+    }
+
+    /**
+     * Blocks until every line logged so far is written out,
+     * or for at most a few seconds if the output does not take them.
+     */
+    public void flush() {
+        Thread thread = writer;
+        long target = tail.get();
+        long deadline = System.nanoTime() + FLUSH_TIMEOUT_NANOS;
+        while (thread != null && written.get() < target && thread.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Write out what is logged so far and stop the writer. Lines logged afterwards are dropped.
+     * Does nothing to the default and the silent logger, which last as long as the program.
+     */
+    @Override
+    public void close() {
+        if (this == defaultLogger || this == silentLogger) {
+            return;
+        }
+        Thread thread;
+        Thread hook;
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            thread = writer;
+            hook = shutdownHook;
+        }
+        if (thread == null) {
             return;
         }
-        System.out.printf(
-            "%s [%s] %s\n".formatted(
-                new Date().toString(), level.getDescription(), message
-            ),
-            args
-        );
+        // The writer drains the ring, then sees it closed and exits.
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.NANOSECONDS.toMillis(FLUSH_TIMEOUT_NANOS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+            // Shutting down already; the hook flushes.
+        }
+    }
+
+    private void enqueue(
+        Level level, String message, Object[] objectArgs,
+        int intArgCount, int arg0, int arg1, int arg2, int arg3, int arg4
+    ) {
+        if (isClosed) {
+            return;
+        }
+        long claim = tail.getAndIncrement();
+        int index = (int) (claim & (RING_CAPACITY - 1));
+
+        // Full: wait for the writer to free the slot. Without a writer, nothing ever will.
+        while (sequences.get(index) != claim) {
+            if (!ensureWriter()) {
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
+
+        IntSupplier time = timeSource;
+        levels[index] = level;
+        isSimulatedTime[index] = time != null;
+        timestamps[index] = time != null ? time.getAsInt() : System.currentTimeMillis();
+        messages[index] = message;
+        args[index] = objectArgs;
+        intArgCounts[index] = intArgCount;
+
+        int base = index * MAX_INT_ARGS;
+        intArgs[base] = arg0;
+        intArgs[base + 1] = arg1;
+        intArgs[base + 2] = arg2;
+        intArgs[base + 3] = arg3;
+        intArgs[base + 4] = arg4;
+
+        sequences.set(index, claim + 1);
+
+        ensureWriter();
+        if (isWriterIdle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * @return false if there is no writer and there will be none: the logger is closed, or the writer died.
+     */
+    private boolean ensureWriter() {
+        Thread thread = writer;
+        if (thread != null) {
+            return thread.isAlive();
+        }
+        synchronized (this) {
+            if (writer != null) {
+                return writer.isAlive();
+            }
+            if (isClosed) {
+                return false;
+            }
+            thread = new Thread(this::drain, "logger-writer");
+            thread.setDaemon(true);
+            thread.start();
+            // Lines logged right before exiting, e.g. on abort, are still written.
+            shutdownHook = new Thread(this::flush);
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+            writer = thread;
+            return true;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            int index = (int) (head & (RING_CAPACITY - 1));
+            if (sequences.get(index) != head + 1) {
+                // Nothing more for now. Write out what we have and sleep, or exit once closed.
+                writeBatch();
+                if (isClosed) {
+                    return;
+                }
+                isWriterIdle = true;
+                if (sequences.get(index) != head + 1) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                isWriterIdle = false;
+                continue;
+            }
+
+            format(index);
+
+            // Free the slot for the producer one lap ahead.
+            messages[index] = null;
+            args[index] = null;
+            sequences.set(index, head + RING_CAPACITY);
+            ++head;
+        }
+    }
+
+    private void format(int index) {
+        line.setLength(0);
+        long timestamp = timestamps[index];
+        if (isSimulatedTime[index]) {
+            line.append(String.format("%02d:%02d:%02d", timestamp / 3600, timestamp / 60 % 60, timestamp % 60));
+        } else {
+            line.append(new Date(timestamp));
+        }
+        line.append(" [").append(levels[index].getDescription()).append("] ");
+
+        Object[] lineArgs = args[index];
+        int intArgCount = intArgCounts[index];
+        if (lineArgs == null) {
+            lineArgs = new Object[intArgCount];
+            for (int i = 0; i < intArgCount; i++) {
+                lineArgs[i] = intArgs[index * MAX_INT_ARGS + i];
+            }
+        }
+        try {
+            line.append(messages[index].formatted(lineArgs));
+        } catch (RuntimeException e) {
+            // A format not matching its arguments costs its own line only, not the writer.
+            line.append(messages[index]).append(" (not formatted: ").append(e).append(')');
+        }
+        line.append('\n');
+
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > batch.remaining()) {
+            writeBatch();
+        }
+        if (bytes.length > batch.capacity()) {
+            write(ByteBuffer.wrap(bytes));
+        } else {
+            batch.put(bytes);
+        }
+    }
+
+    private void writeBatch() {
+        if (batch.position() > 0) {
+            batch.flip();
+            write(batch);
+            batch.clear();
+        }
+        written.set(head);
+    }
+
+    private void write(ByteBuffer buffer) {
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            // Nowhere left to report it. Drop the batch.
+            buffer.position(buffer.limit());
+        }
     }
 
     public enum Level {
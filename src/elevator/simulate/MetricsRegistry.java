@@ -0,0 +1,200 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live numbers of a running simulation, readable while it runs:
+ * over JMX, or dumped to a logger every so often.
+ * <p>
+ * Counters and maximums are striped ({@link LongAdder}, {@link LongAccumulator}),
+ * so the elevator threads updating them never contend. Gauges are read only when asked.
+ * Metric names are dotted, e.g. "elevator.0.seconds.moving".
+ */
+public class MetricsRegistry {
+    // LongAdder, LongAccumulator or LongSupplier, by name.
+    private final ConcurrentSkipListMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    private ScheduledExecutorService dumper;
+
+    /**
+     * @return the counter of the name, created at 0 if new.
+     */
+    public LongAdder counter(String name) {
+        return (LongAdder) metrics.computeIfAbsent(name, (key) -> new LongAdder());
+    }
+
+    /**
+     * @return the running maximum of the name, created at 0 if new.
+     */
+    public LongAccumulator maximum(String name) {
+        return (LongAccumulator) metrics.computeIfAbsent(name, (key) -> new LongAccumulator(Math::max, 0));
+    }
+
+    /**
+     * @param value read on every snapshot, from the thread taking it.
+     */
+    public void gauge(String name, LongSupplier value) {
+        metrics.put(name, value);
+    }
+
+    public long get(String name) {
+        return valueOf(metrics.get(name));
+    }
+
+    /**
+     * @return every metric by name, in name order.
+     */
+    public SortedMap<String, Long> snapshot() {
+        SortedMap<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            snapshot.put(entry.getKey(), valueOf(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Log a snapshot, one metric per line.
+     */
+    public void dump(Logger logger) {
+        SortedMap<String, Long> snapshot = snapshot();
+
+        logger.loggingMutex.lock();
+        logger.info("Metrics: ");
+        for (Map.Entry<String, Long> entry : snapshot.entrySet()) {
+            logger.info("\t%s: %d", entry.getKey(), entry.getValue());
+        }
+        logger.loggingMutex.unlock();
+    }
+
+    /**
+     * Dump a snapshot every period of wall time, from a background thread, until {@link #stopDumping()}.
+     */
+    public synchronized void startDumping(Logger logger, long periodMillis) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "metrics-dumper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(logger), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopDumping() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Expose every metric as a read-only attribute of an MBean, e.g. for JConsole.
+     * Metrics added later show up too.
+     *
+     * @param objectName e.g. "elevator:type=Metrics,name=large".
+     */
+    public void registerMBean(String objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new MetricsMBean(), new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics as " + objectName, e);
+        }
+    }
+
+    public void unregisterMBean(String objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.unregisterMBean(new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister metrics " + objectName, e);
+        }
+    }
+
+    private static long valueOf(Object metric) {
+        if (metric instanceof LongAdder adder) {
+            return adder.sum();
+        }
+        if (metric instanceof LongAccumulator accumulator) {
+            return accumulator.get();
+        }
+        if (metric instanceof LongSupplier gauge) {
+            return gauge.getAsLong();
+        }
+        return 0;
+    }
+
+    private class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object metric = metrics.get(attribute);
+            if (metric == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return valueOf(metric);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Metrics are read-only.");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                Object metric = metrics.get(attribute);
+                if (metric != null) {
+                    list.add(new Attribute(attribute, valueOf(metric)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("Metrics have no operations.");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] attributes = metrics.keySet().stream()
+                .map((name) -> new MBeanAttributeInfo(name, "long", name, true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+            return new MBeanInfo(
+                MetricsRegistry.class.getName(), "Live simulation metrics.", attributes, null, null, null
+            );
+        }
+    }
+}
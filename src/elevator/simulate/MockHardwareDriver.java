@@ -0,0 +1,98 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import elevator.HardwareControl;
+import elevator.HardwareDriver;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Cars that take a while to confirm their commands, to see how the controller keeps up with slow hardware.
+ * Every batch is confirmed after the latency plus up to the jitter, on a timer thread of its own.
+ * The cars carry out the steps as they come and count those that break an interlock,
+ * e.g. opening the door while moving.
+ */
+public class MockHardwareDriver implements HardwareDriver {
+    private final int latencyMillis;
+    private final int jitterMillis;
+    private final UniformRandom random;
+    private final ScheduledExecutorService timer;
+
+    // Guarded by this.
+    private final boolean[] isMoving;
+    private final boolean[] isDoorOpen;
+    private long stepsExecuted;
+    private long interlockViolations;
+
+    public MockHardwareDriver(int numElevators, int latencyMillis, int jitterMillis, long seed) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.random = new UniformRandom(seed);
+        this.isMoving = new boolean[numElevators];
+        this.isDoorOpen = new boolean[numElevators];
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mock-hardware");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void execute(Batch batch, Consumer<Batch> onAcknowledged) {
+        int delay;
+        synchronized (this) {
+            delay = latencyMillis + (jitterMillis > 0 ? random.nextInt(0, jitterMillis) : 0);
+        }
+        timer.schedule(() -> {
+            carryOut(batch);
+            onAcknowledged.accept(batch);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void carryOut(Batch batch) {
+        int car = batch.elevatorId();
+        for (Step step : batch.steps()) {
+            stepsExecuted += step.times();
+            HardwareControl.Command command = step.command();
+            switch (command) {
+                case OPEN_DOOR -> {
+                    if (isMoving[car]) {
+                        ++interlockViolations;
+                    }
+                    isDoorOpen[car] = true;
+                }
+                case CLOSE_DOOR -> isDoorOpen[car] = false;
+                case MOVE_UP, MOVE_DOWN -> {
+                    if (isDoorOpen[car]) {
+                        ++interlockViolations;
+                    }
+                    isMoving[car] = true;
+                }
+                case STOP, ABORT -> isMoving[car] = false;
+            }
+        }
+    }
+
+    /**
+     * Stop the timer. Batches not confirmed yet never will be.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    public synchronized long getStepsExecuted() {
+        return stepsExecuted;
+    }
+
+    public synchronized long getInterlockViolations() {
+        return interlockViolations;
+    }
+}
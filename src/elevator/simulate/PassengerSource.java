@@ -0,0 +1,47 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Where the passengers of a building come from, in arrival order.
+ * A cursor: peek at the next arrival, then pop it.
+ */
+public interface PassengerSource extends Closeable {
+    // Returned by {@link #peekTime()} once there are no more arrivals.
+    int NO_MORE_ARRIVALS = Integer.MAX_VALUE;
+
+    /**
+     * @return the second the next passenger arrives, or {@link #NO_MORE_ARRIVALS}.
+     */
+    int peekTime();
+
+    int peekOrigin();
+
+    int peekDestination();
+
+    /**
+     * @return how many travel together, e.g. keyed in as one party at a destination dispatch kiosk.
+     */
+    default int peekPartySize() {
+        return 1;
+    }
+
+    /**
+     * Move on to the next passenger.
+     */
+    void pop();
+
+    /**
+     * Release whatever the passengers are read from. Nothing by default.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import elevator.Elevator;
+import elevator.PressQueue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stands in for the building bus of a live building: presses random hall calls and car buttons
+ * as fast as the {@link elevator.PressServer} takes them, over connections of their own, one thread each.
+ */
+public class PressLoadGenerator {
+    private static final int FRAMES_PER_WRITE = 2048;
+
+    private final InetSocketAddress address;
+    private final int numFloors;
+    private final int numElevators;
+    private final long seed;
+
+    public PressLoadGenerator(InetSocketAddress address, int numFloors, int numElevators, long seed) {
+        this.address = address;
+        this.numFloors = numFloors;
+        this.numElevators = numElevators;
+        this.seed = seed;
+    }
+
+    /**
+     * Send the frames and block until all are written.
+     *
+     * @return the frames sent over all connections.
+     */
+    public long send(int connections, long framesPerConnection) throws IOException {
+        long[] seeds = ScenarioRunner.seeds(seed, connections);
+        List<Thread> threads = new ArrayList<>();
+        IOException[] failure = new IOException[1];
+        for (int c = 0; c < connections; c++) {
+            UniformRandom random = new UniformRandom(seeds[c]);
+            Thread thread = new Thread(() -> {
+                try {
+                    sendFrom(random, framesPerConnection);
+                } catch (IOException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, "press-load-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new IOException("Interrupted while sending presses.", e));
+            }
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return connections * framesPerConnection;
+    }
+
+    private void sendFrom(UniformRandom random, long frames) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(FRAMES_PER_WRITE * 4);
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            for (long sent = 0; sent < frames; ) {
+                buffer.clear();
+                int batch = (int) Math.min(FRAMES_PER_WRITE, frames - sent);
+                for (int i = 0; i < batch; i++) {
+                    buffer.putInt(nextFrame(random));
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                sent += batch;
+            }
+        }
+    }
+
+    /**
+     * Half hall calls, half car buttons. No up call on the top floor, no down call on the ground floor.
+     */
+    private int nextFrame(UniformRandom random) {
+        if (random.nextBoolean()) {
+            return PressQueue.carFrame(random.nextInt(numElevators), random.nextInt(numFloors));
+        }
+        int floor = random.nextInt(numFloors);
+        boolean isUp = floor == 0 || (floor < numFloors - 1 && random.nextBoolean());
+        return PressQueue.hallFrame(floor, isUp ? Elevator.Direction.UP : Elevator.Direction.DOWN);
+    }
+}
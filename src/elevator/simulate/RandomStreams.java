@@ -0,0 +1,58 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+/**
+ * Many {@link UniformRandom} streams kept in two long arrays, e.g. one per car of a fleet,
+ * instead of one object each.
+ * A stream is drawn from through a cursor: load it, draw, store it back.
+ * The numbers are the same as those of the UniformRandom the stream was set from.
+ * Not thread-safe per stream; different streams may be used by different threads, each with its own cursor.
+ */
+public class RandomStreams {
+    private final long[] seeds;
+    private final long[] gammas;
+
+    public RandomStreams(int size) {
+        seeds = new long[size];
+        gammas = new long[size];
+    }
+
+    public int size() {
+        return seeds.length;
+    }
+
+    /**
+     * Continue the stream of the given random from now on.
+     */
+    public void set(int index, UniformRandom random) {
+        seeds[index] = random.seed;
+        gammas[index] = random.gamma;
+    }
+
+    /**
+     * @return a cursor for {@link #load} and {@link #store}, belonging to one thread.
+     */
+    public static UniformRandom newCursor() {
+        return new UniformRandom(0);
+    }
+
+    /**
+     * Point the cursor to a stream.
+     */
+    public void load(int index, UniformRandom cursor) {
+        cursor.seed = seeds[index];
+        cursor.gamma = gammas[index];
+    }
+
+    /**
+     * Keep what was drawn through the cursor, for the next {@link #load} of the stream.
+     */
+    public void store(int index, UniformRandom cursor) {
+        seeds[index] = cursor.seed;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import elevator.SimulationConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One point of a parameter sweep: a building and how it is simulated.
+ */
+public record Scenario(
+    int numFloors,
+    int numElevators,
+    int elevatorCapacity,
+    SimulationConfig config
+) {
+    /**
+     * @return every combination of the given values.
+     */
+    public static List<Scenario> grid(
+        int[] numFloors, int[] numElevators, int[] elevatorCapacities, List<SimulationConfig> configs
+    ) {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (int floors : numFloors) {
+            for (int elevators : numElevators) {
+                for (int capacity : elevatorCapacities) {
+                    for (SimulationConfig config : configs) {
+                        scenarios.add(new Scenario(floors, elevators, capacity, config));
+                    }
+                }
+            }
+        }
+        return scenarios;
+    }
+
+    public ElevatorSimulator newSimulator(long seed, Logger logger) {
+        return new ElevatorSimulator(
+            numFloors, numElevators, elevatorCapacity, config.withSeed(seed), logger
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "floors=%d, elevators=%d, capacity=%d, clock=%s, dispatch=%s".formatted(
+            numFloors, numElevators, elevatorCapacity, config.clockMode(), config.dispatch()
+        );
+    }
+}
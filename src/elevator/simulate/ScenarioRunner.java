@@ -0,0 +1,94 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Monte-Carlo runner.
+ * Runs every scenario once per seed, spread across a fork-join pool.
+ * Each replication has its own floors, elevators, random streams and logger,
+ * so that nothing is shared between them.
+ */
+public class ScenarioRunner {
+    private final int parallelism;
+    private final Supplier<Logger> loggerFactory;
+
+    public ScenarioRunner() {
+        this(Runtime.getRuntime().availableProcessors(), Logger::silent);
+    }
+
+    /**
+     * @param parallelism   the number of replications running at the same time.
+     * @param loggerFactory creates the logger of each replication, closed once it is done.
+     */
+    public ScenarioRunner(int parallelism, Supplier<Logger> loggerFactory) {
+        this.parallelism = parallelism;
+        this.loggerFactory = loggerFactory;
+    }
+
+    /**
+     * @return the seeds of the replications, all derived from one master seed.
+     */
+    public static long[] seeds(long masterSeed, int replications) {
+        UniformRandom master = new UniformRandom(masterSeed);
+        long[] seeds = new long[replications];
+        for (int i = 0; i < replications; i++) {
+            seeds[i] = master.nextLong();
+        }
+        return seeds;
+    }
+
+    /**
+     * Run and block until all replications are complete.
+     * The event clock mode is the fastest for this, as it never waits for the wall clock.
+     *
+     * @return one summary per scenario, in the same order.
+     */
+    public List<ScenarioSummary> run(List<Scenario> scenarios, long[] seeds) {
+        List<Callable<SimulationResult>> replications = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            for (long seed : seeds) {
+                replications.add(() -> {
+                    try (Logger logger = loggerFactory.get()) {
+                        ElevatorSimulator simulator = scenario.newSimulator(seed, logger);
+                        simulator.run();
+                        return simulator.getResult();
+                    }
+                });
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Future<SimulationResult>> futures;
+        try {
+            futures = pool.invokeAll(replications);
+        } finally {
+            pool.shutdown();
+        }
+
+        List<ScenarioSummary> summaries = new ArrayList<>();
+        for (int s = 0; s < scenarios.size(); s++) {
+            List<SimulationResult> results = new ArrayList<>();
+            for (int r = 0; r < seeds.length; r++) {
+                try {
+                    results.add(futures.get(s * seeds.length + r).get());
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException("Replication failed: " + scenarios.get(s), e);
+                }
+            }
+            summaries.add(ScenarioSummary.of(scenarios.get(s), results));
+        }
+        return summaries;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.util.List;
+
+/**
+ * Mean and 95% confidence interval of every metric, over the replications of one scenario.
+ */
+public record ScenarioSummary(
+    Scenario scenario,
+    int replications,
+    double[] mean,
+    double[] halfWidth
+) {
+    // Two-sided 95% Student's t critical values, for 1 to 30 degrees of freedom.
+    private static final double[] T_95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042,
+    };
+    private static final double Z_95 = 1.960;
+
+    public static ScenarioSummary of(Scenario scenario, List<SimulationResult> results) {
+        int n = results.size();
+        int metrics = SimulationResult.METRIC_NAMES.length;
+        double[] mean = new double[metrics];
+        double[] sumOfSquares = new double[metrics];
+
+        // Welford's algorithm, stable for long sweeps.
+        for (int i = 0; i < n; i++) {
+            double[] values = results.get(i).values();
+            for (int m = 0; m < metrics; m++) {
+                double delta = values[m] - mean[m];
+                mean[m] += delta / (i + 1);
+                sumOfSquares[m] += delta * (values[m] - mean[m]);
+            }
+        }
+
+        double[] halfWidth = new double[metrics];
+        if (n > 1) {
+            double t = n - 1 <= T_95.length ? T_95[n - 2] : Z_95;
+            for (int m = 0; m < metrics; m++) {
+                double standardDeviation = Math.sqrt(sumOfSquares[m] / (n - 1));
+                halfWidth[m] = t * standardDeviation / Math.sqrt(n);
+            }
+        }
+
+        return new ScenarioSummary(scenario, n, mean, halfWidth);
+    }
+
+    public void print(Logger logger) {
+        logger.loggingMutex.lock();
+
+        logger.info("Scenario (%s), %d replications: ", scenario, replications);
+        for (int m = 0; m < mean.length; m++) {
+            logger.info("\t%24s: %.2f +/- %.2f", SimulationResult.METRIC_NAMES[m], mean[m], halfWidth[m]);
+        }
+
+        logger.loggingMutex.unlock();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import elevator.Elevator;
+
+import java.util.List;
+
+/**
+ * The building-wide numbers of one finished simulation.
+ */
+public record SimulationResult(
+    int ridersRequested,
+    int ridersServed,
+    double averageServeSeconds,
+    double servedPerElevatorHour,
+    int waitP50Seconds,
+    int waitP90Seconds,
+    int waitP99Seconds,
+    int waitMaxSeconds,
+    int rideP50Seconds,
+    int rideP99Seconds
+) {
+    // Names of the values returned by {@link #values()}, in the same order.
+    public static final String[] METRIC_NAMES = {
+        "Riders requested",
+        "Riders served",
+        "Riders not picked up",
+        "Average serve time (s)",
+        "Served per elevator-hour",
+        "Wait time p50 (s)",
+        "Wait time p90 (s)",
+        "Wait time p99 (s)",
+        "Wait time max (s)",
+        "Ride time p50 (s)",
+        "Ride time p99 (s)",
+    };
+
+    public static SimulationResult of(List<Elevator> elevators, int runningSeconds) {
+        return of(elevators, runningSeconds, 0);
+    }
+
+    /**
+     * @param stillWaiting the passengers of the building never picked up, added to the requested ones.
+     */
+    public static SimulationResult of(List<Elevator> elevators, int runningSeconds, int stillWaiting) {
+        int requested = stillWaiting;
+        int served = 0;
+        double serveSeconds = 0;
+        LatencyHistogram waitTimes = new LatencyHistogram();
+        LatencyHistogram rideTimes = new LatencyHistogram();
+
+        for (Elevator elevator : elevators) {
+            requested += elevator.getRidersRequested();
+            served += elevator.getRidersServed();
+            // Same as the per-elevator report. Nobody served counts as the whole run.
+            serveSeconds += (double) runningSeconds / Math.max(elevator.getRidersServed(), 1);
+            waitTimes.merge(elevator.getWaitTimes());
+            rideTimes.merge(elevator.getRideTimes());
+        }
+
+        return new SimulationResult(
+            requested,
+            served,
+            serveSeconds / elevators.size(),
+            served * 3600.0 / runningSeconds / elevators.size(),
+            waitTimes.getPercentile(50),
+            waitTimes.getPercentile(90),
+            waitTimes.getPercentile(99),
+            waitTimes.getMax(),
+            rideTimes.getPercentile(50),
+            rideTimes.getPercentile(99)
+        );
+    }
+
+    public int ridersNotPickedUp() {
+        return ridersRequested - ridersServed;
+    }
+
+    public double[] values() {
+        return new double[] {
+            ridersRequested,
+            ridersServed,
+            ridersNotPickedUp(),
+            averageServeSeconds,
+            servedPerElevatorHour,
+            waitP50Seconds,
+            waitP90Seconds,
+            waitP99Seconds,
+            waitMaxSeconds,
+            rideP50Seconds,
+            rideP99Seconds,
+        };
+    }
+}
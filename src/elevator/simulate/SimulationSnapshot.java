@@ -0,0 +1,119 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The full state of a building part-way through a run, see {@link ElevatorSimulator#snapshot()}.
+ * Restored into as many simulators as needed, e.g. to warm up once and try several strategies from there.
+ * <p>
+ * File layout, big-endian: magic "ELVS", version, floors, elevators, capacity, time,
+ * then the length and bytes of the state.
+ */
+public final class SimulationSnapshot {
+    public static final int MAGIC = 0x454c5653; // "ELVS"
+    public static final int VERSION = 2;
+
+    private final int numFloors;
+    private final int numElevators;
+    private final int elevatorCapacity;
+    private final int time;
+    private final byte[] state;
+
+    SimulationSnapshot(int numFloors, int numElevators, int elevatorCapacity, int time, byte[] state) {
+        this.numFloors = numFloors;
+        this.numElevators = numElevators;
+        this.elevatorCapacity = elevatorCapacity;
+        this.time = time;
+        this.state = state;
+    }
+
+    /**
+     * @param bytes as returned by {@link #toBytes()}.
+     * @throws IOException if the bytes are not a snapshot of this version.
+     */
+    public static SimulationSnapshot of(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (bytes.length < 8 || in.readInt() != MAGIC) {
+            throw new IOException("Not a simulation snapshot.");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version %d.".formatted(version));
+        }
+        int numFloors = in.readInt();
+        int numElevators = in.readInt();
+        int elevatorCapacity = in.readInt();
+        int time = in.readInt();
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Truncated simulation snapshot.");
+        }
+        byte[] state = new byte[length];
+        in.readFully(state);
+        return new SimulationSnapshot(numFloors, numElevators, elevatorCapacity, time, state);
+    }
+
+    public static SimulationSnapshot read(Path path) throws IOException {
+        return of(Files.readAllBytes(path));
+    }
+
+    public void write(Path path) throws IOException {
+        Files.write(path, toBytes());
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(state.length + 28);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numFloors);
+            out.writeInt(numElevators);
+            out.writeInt(elevatorCapacity);
+            out.writeInt(time);
+            out.writeInt(state.length);
+            out.write(state);
+        } catch (IOException e) {
+            // Not thrown by a byte array.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the state of the building, as written by {@link elevator.ElevatorService#writeState}.
+     */
+    DataInputStream openState() {
+        return new DataInputStream(new ByteArrayInputStream(state));
+    }
+
+    public int getNumFloors() {
+        return numFloors;
+    }
+
+    public int getNumElevators() {
+        return numElevators;
+    }
+
+    public int getElevatorCapacity() {
+        return elevatorCapacity;
+    }
+
+    /**
+     * @return the simulated second the snapshot was taken at.
+     */
+    public int getTime() {
+        return time;
+    }
+}
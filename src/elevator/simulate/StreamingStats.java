@@ -0,0 +1,228 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.util.function.IntSupplier;
+
+/**
+ * The numbers of a running simulation, taken as things happen instead of once at the end:
+ * wait and ride times, the load of each car as it leaves a stop, and the hall calls pending,
+ * taken as they change and counted once for every second they held.
+ * Kept per window of simulated time, e.g. 5 minutes, reported as each window ends, and for the whole run.
+ * <p>
+ * Every number goes into a {@link LatencyHistogram}, so memory stays the same however long the run,
+ * and the numbers of parallel replications merge exactly, see {@link #merge}.
+ * Safe to record from the tick threads of all elevators.
+ */
+public class StreamingStats {
+    public enum Metric {
+        WAIT_SECONDS, RIDE_SECONDS, LOAD_PERCENT, HALL_CALLS
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final int windowSeconds;
+    private final Logger logger;
+
+    // Guarded by this. Indexed by metric.
+    private final LatencyHistogram[] window = new LatencyHistogram[METRICS.length];
+    private final LatencyHistogram[] total = new LatencyHistogram[METRICS.length];
+    private int windowStart;
+    private boolean isWindowEmpty = true;
+    private int windows;
+
+    // The hall calls pending. Null if not taken.
+    private IntSupplier hallCalls;
+    // Guarded by this. The last number of hall calls, and the second up to which it is recorded.
+    private int lastHallCalls;
+    private int hallCallsRecordedUntil;
+
+    // The current simulated second.
+    private IntSupplier time = () -> 0;
+
+    /**
+     * @param logger where the report of every window goes as it ends. {@link Logger#silent()} for none.
+     */
+    public StreamingStats(int windowSeconds, Logger logger) {
+        if (windowSeconds <= 0) {
+            throw new IllegalArgumentException("A window lasts at least a second.");
+        }
+        this.windowSeconds = windowSeconds;
+        this.logger = logger;
+        for (int i = 0; i < METRICS.length; i++) {
+            window[i] = new LatencyHistogram();
+            total[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @param hallCalls the number of hall calls pending, read now and on every {@link #onHallCallsChanged}.
+     *                  Call before starting, after the time source is set.
+     */
+    public synchronized void setHallCalls(IntSupplier hallCalls) {
+        this.hallCalls = hallCalls;
+        this.lastHallCalls = hallCalls.getAsInt();
+        this.hallCallsRecordedUntil = time.getAsInt();
+    }
+
+    /**
+     * Take the simulated time from the clock. Call before the clock starts.
+     */
+    public void attachTo(Clock clock) {
+        this.time = clock::getTick;
+    }
+
+    /**
+     * Take the simulated time from the scheduler. Call before the scheduler runs.
+     */
+    public void attachTo(EventScheduler scheduler) {
+        this.time = scheduler::getTime;
+    }
+
+    /**
+     * The hall calls pending changed. The number before counts once for every second it held,
+     * so nothing needs to wake up every second, e.g. in the event clock mode.
+     */
+    public synchronized void onHallCallsChanged() {
+        if (hallCalls == null) {
+            return;
+        }
+        int now = time.getAsInt();
+        advanceTo(now);
+        recordHallCallsUntil(now);
+        lastHallCalls = hallCalls.getAsInt();
+    }
+
+    // Guarded by this.
+    private void recordHallCallsUntil(int time) {
+        if (hallCalls == null || time <= hallCallsRecordedUntil) {
+            return;
+        }
+        int seconds = time - hallCallsRecordedUntil;
+        window[Metric.HALL_CALLS.ordinal()].record(lastHallCalls, seconds);
+        total[Metric.HALL_CALLS.ordinal()].record(lastHallCalls, seconds);
+        isWindowEmpty = false;
+        hallCallsRecordedUntil = time;
+    }
+
+    /**
+     * @param time the simulated second it happened. Late numbers, e.g. from a clock behind, go into the current window.
+     */
+    public synchronized void record(Metric metric, int time, int value) {
+        advanceTo(time);
+        window[metric.ordinal()].record(value);
+        total[metric.ordinal()].record(value);
+        isWindowEmpty = false;
+    }
+
+    private synchronized void advanceTo(int time) {
+        while (time >= windowStart + windowSeconds) {
+            // The hall calls held up to the end of the window belong to it.
+            recordHallCallsUntil(windowStart + windowSeconds);
+            if (!isWindowEmpty) {
+                reportWindow();
+            }
+            for (LatencyHistogram histogram : window) {
+                histogram.reset();
+            }
+            isWindowEmpty = true;
+            // Skip the windows nothing happened in, unless hall calls held through them.
+            windowStart = hallCalls != null ? windowStart + windowSeconds : time - time % windowSeconds;
+        }
+    }
+
+    /**
+     * Report the window under way, and the whole run. Call once the run is over.
+     */
+    public synchronized void finish() {
+        int now = time.getAsInt();
+        advanceTo(now);
+        recordHallCallsUntil(now);
+        if (!isWindowEmpty) {
+            reportWindow();
+            isWindowEmpty = true;
+        }
+        printReport(logger);
+    }
+
+    /**
+     * Add the whole-run numbers of another run, e.g. a replication, to those of this one.
+     */
+    public void merge(StreamingStats other) {
+        LatencyHistogram[] copy = other.getTotals();
+        int otherWindows = other.getWindows();
+        synchronized (this) {
+            windows += otherWindows;
+            for (int i = 0; i < METRICS.length; i++) {
+                total[i].merge(copy[i]);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the whole-run numbers of the metric.
+     */
+    public synchronized LatencyHistogram getTotal(Metric metric) {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.merge(total[metric.ordinal()]);
+        return copy;
+    }
+
+    private synchronized LatencyHistogram[] getTotals() {
+        LatencyHistogram[] copy = new LatencyHistogram[METRICS.length];
+        for (int i = 0; i < METRICS.length; i++) {
+            copy[i] = getTotal(METRICS[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * @return the windows reported so far.
+     */
+    public synchronized int getWindows() {
+        return windows;
+    }
+
+    private void reportWindow() {
+        ++windows;
+        if (logger.isEnabled(Logger.Level.INFO)) {
+            logger.info("Seconds %d-%d: %s", windowStart, windowStart + windowSeconds, describe(window));
+        }
+    }
+
+    public synchronized void printReport(Logger logger) {
+        logger.loggingMutex.lock();
+
+        logger.info("Streaming statistics, %d windows of %d seconds. Report: ", windows, windowSeconds);
+        logger.info("\t   Wait time: %s", describe(total[Metric.WAIT_SECONDS.ordinal()], "seconds"));
+        logger.info("\t   Ride time: %s", describe(total[Metric.RIDE_SECONDS.ordinal()], "seconds"));
+        logger.info("\t    Car load: %s", describe(total[Metric.LOAD_PERCENT.ordinal()], "percent"));
+        logger.info("\t  Hall calls: %s", describe(total[Metric.HALL_CALLS.ordinal()], "pending"));
+
+        logger.loggingMutex.unlock();
+    }
+
+    private static String describe(LatencyHistogram[] histograms) {
+        LatencyHistogram wait = histograms[Metric.WAIT_SECONDS.ordinal()];
+        LatencyHistogram ride = histograms[Metric.RIDE_SECONDS.ordinal()];
+        LatencyHistogram load = histograms[Metric.LOAD_PERCENT.ordinal()];
+        LatencyHistogram calls = histograms[Metric.HALL_CALLS.ordinal()];
+        return ("%d boarded, wait p50 %d, p90 %d s; ride p50 %d, p90 %d s; "
+            + "load mean %.0f%%, p90 %d%%; calls mean %.1f, max %d").formatted(
+                wait.getCount(), wait.getPercentile(50), wait.getPercentile(90),
+                ride.getPercentile(50), ride.getPercentile(90),
+                load.getMean(), load.getPercentile(90), calls.getMean(), calls.getMax()
+            );
+    }
+
+    private static String describe(LatencyHistogram histogram, String unit) {
+        return "%d samples, mean %.1f, p50 %d, p90 %d, p99 %d, max %d %s".formatted(
+            histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+            histogram.getPercentile(90), histogram.getPercentile(99), histogram.getMax(), unit
+        );
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a sweep across worker processes, see {@link SweepWorker}, talking to each over its pipes.
+ * A worker asks for the next replication as soon as it is done with one, so the fast ones take more.
+ * A worker that fails, exits or runs past the timeout loses its replication to the queue again,
+ * up to a number of attempts, and is replaced by a new process.
+ * <p>
+ * The workers are local JVMs by default. Any command that starts a worker with its pipes attached,
+ * e.g. through ssh, works the same.
+ */
+public class SweepCoordinator {
+    private static final long POLL_MILLIS = 100;
+
+    public interface OnResultListener {
+        /**
+         * Called on the coordinator thread as each replication completes, in no particular order.
+         */
+        void onResult(Scenario scenario, long seed, SimulationResult result);
+    }
+
+    private final int numWorkers;
+    private final String planClass;
+    private final Logger logger;
+
+    // Starts a worker, before the worker class and the plan class are appended.
+    private List<String> workerCommand = List.of(
+        Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+        "-cp", System.getProperty("java.class.path")
+    );
+    private int maxAttempts = 3;
+    private long jobTimeoutMillis = 0;
+    private OnResultListener onResultListener;
+
+    /**
+     * @param numWorkers the number of worker processes at a time.
+     * @param planClass  the {@link SweepPlan} every worker builds its scenarios from.
+     */
+    public SweepCoordinator(int numWorkers, Class<? extends SweepPlan> planClass, Logger logger) {
+        this.numWorkers = Math.max(numWorkers, 1);
+        this.planClass = planClass.getName();
+        this.logger = logger;
+    }
+
+    public void setWorkerCommand(List<String> workerCommand) {
+        this.workerCommand = List.copyOf(workerCommand);
+    }
+
+    /**
+     * @param maxAttempts how often a replication is tried before it is given up.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(maxAttempts, 1);
+    }
+
+    /**
+     * @param jobTimeoutMillis how long a replication may take before its worker is killed. 0 for no limit.
+     */
+    public void setJobTimeoutMillis(long jobTimeoutMillis) {
+        this.jobTimeoutMillis = jobTimeoutMillis;
+    }
+
+    public void setOnResultListener(OnResultListener listener) {
+        this.onResultListener = listener;
+    }
+
+    /**
+     * Run every scenario of the plan once per seed, and block until all are complete or given up.
+     *
+     * @return one summary per scenario, in the same order, over the replications that completed.
+     */
+    public List<ScenarioSummary> run(long[] seeds) {
+        List<Scenario> scenarios;
+        try {
+            scenarios = SweepWorker.loadPlan(planClass).scenarios();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create the sweep plan " + planClass, e);
+        }
+
+        List<Job> jobs = new ArrayList<>();
+        for (int s = 0; s < scenarios.size(); s++) {
+            for (long seed : seeds) {
+                jobs.add(new Job(jobs.size(), s, seed));
+            }
+        }
+
+        Sweep sweep = new Sweep(scenarios, jobs);
+        try {
+            sweep.run();
+        } finally {
+            sweep.stopWorkers();
+        }
+
+        List<ScenarioSummary> summaries = new ArrayList<>();
+        int failed = 0;
+        for (int s = 0; s < scenarios.size(); s++) {
+            List<SimulationResult> results = new ArrayList<>();
+            for (int r = 0; r < seeds.length; r++) {
+                Job job = jobs.get(s * seeds.length + r);
+                if (job.result != null) {
+                    results.add(job.result);
+                } else {
+                    ++failed;
+                }
+            }
+            summaries.add(ScenarioSummary.of(scenarios.get(s), results));
+        }
+        if (failed > 0) {
+            logger.info("Sweep: %d of %d replications given up.", failed, jobs.size());
+        }
+        return summaries;
+    }
+
+    /**
+     * The state of one run, only touched by the coordinator thread.
+     * The reader threads of the workers only hand their lines over through the event queue.
+     */
+    private class Sweep {
+        private final List<Scenario> scenarios;
+        private final List<Job> jobs;
+        private final Deque<Job> pending;
+        private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        private final List<Worker> workers = new ArrayList<>();
+        // Workers dying during a replication use up its attempts. Those dying without one use up these,
+        // e.g. if the worker command is broken.
+        private int restartsLeft;
+        private int finished;
+
+        Sweep(List<Scenario> scenarios, List<Job> jobs) {
+            this.scenarios = scenarios;
+            this.jobs = jobs;
+            this.pending = new ArrayDeque<>(jobs);
+            this.restartsLeft = numWorkers * maxAttempts;
+        }
+
+        void run() {
+            for (int i = 0; i < Math.min(numWorkers, jobs.size()); i++) {
+                startWorker();
+            }
+
+            while (finished < jobs.size()) {
+                // Replace the workers that died, as long as there is work for them.
+                if (!pending.isEmpty() && countLiveWorkers() < numWorkers && restartsLeft > 0) {
+                    startWorker();
+                }
+                if (countLiveWorkers() == 0) {
+                    throw new IllegalStateException("Sweep: every worker died, %d of %d replications done."
+                        .formatted(finished, jobs.size()));
+                }
+                Event event;
+                try {
+                    event = events.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while sweeping.", e);
+                }
+                if (event != null) {
+                    handle(event);
+                }
+                killLateWorkers();
+            }
+        }
+
+        private void handle(Event event) {
+            Worker worker = event.worker;
+            if (event.line == null) {
+                onWorkerExit(worker);
+                return;
+            }
+
+            String[] fields = event.line.split(" ");
+            switch (fields[0]) {
+                case "READY" -> worker.isReady = true;
+                case "RESULT" -> {
+                    Job job = worker.job;
+                    if (job == null || Integer.parseInt(fields[1]) != job.index) {
+                        return;
+                    }
+                    job.result = SweepWorker.decode(fields, 2);
+                    worker.job = null;
+                    ++finished;
+                    if (onResultListener != null) {
+                        onResultListener.onResult(scenarios.get(job.scenario), job.seed, job.result);
+                    }
+                }
+                case "FAILED" -> {
+                    Job job = worker.job;
+                    if (job == null || Integer.parseInt(fields[1]) != job.index) {
+                        return;
+                    }
+                    logger.error("Sweep: worker #%d failed replication %d: %s",
+                        worker.id, job.index, event.line.substring(event.line.indexOf(' ', 7) + 1));
+                    worker.job = null;
+                    retryOrGiveUp(job);
+                }
+                default -> logger.error("Sweep: worker #%d said %s", worker.id, event.line);
+            }
+            dispatch(worker);
+        }
+
+        private void onWorkerExit(Worker worker) {
+            worker.isDead = true;
+            int exitCode = waitForExit(worker.process);
+            Job job = worker.job;
+            worker.job = null;
+            if (job != null) {
+                logger.error("Sweep: worker #%d exited with %d during replication %d.", worker.id, exitCode, job.index);
+                retryOrGiveUp(job);
+            } else if (finished < jobs.size()) {
+                logger.error("Sweep: worker #%d exited with %d.", worker.id, exitCode);
+                --restartsLeft;
+            }
+        }
+
+        private int countLiveWorkers() {
+            int live = 0;
+            for (Worker worker : workers) {
+                if (!worker.isDead) {
+                    ++live;
+                }
+            }
+            return live;
+        }
+
+        private void retryOrGiveUp(Job job) {
+            if (++job.attempts < maxAttempts) {
+                pending.addFirst(job);
+                for (Worker idle : workers) {
+                    dispatch(idle);
+                }
+            } else {
+                logger.error("Sweep: replication %d (%s, seed %d) given up after %d attempts.",
+                    job.index, scenarios.get(job.scenario), job.seed, job.attempts);
+                ++finished;
+            }
+        }
+
+        /**
+         * Hand the next replication to the worker, if it is waiting for one.
+         */
+        private void dispatch(Worker worker) {
+            if (worker.isDead || !worker.isReady || worker.job != null || pending.isEmpty()) {
+                return;
+            }
+            Job job = pending.poll();
+            worker.job = job;
+            worker.deadlineNanos = System.nanoTime() + jobTimeoutMillis * 1_000_000;
+            try {
+                worker.out.write("RUN " + job.index + " " + job.scenario + " " + job.seed + "\n");
+                worker.out.flush();
+            } catch (IOException e) {
+                // Its exit comes as an event and gives the replication back.
+                worker.process.destroyForcibly();
+            }
+        }
+
+        private void killLateWorkers() {
+            if (jobTimeoutMillis <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (Worker worker : workers) {
+                if (!worker.isDead && worker.job != null && now - worker.deadlineNanos > 0) {
+                    logger.error("Sweep: worker #%d timed out on replication %d.", worker.id, worker.job.index);
+                    worker.deadlineNanos = Long.MAX_VALUE;
+                    worker.process.destroyForcibly();
+                }
+            }
+        }
+
+        private void startWorker() {
+            List<String> command = new ArrayList<>(workerCommand);
+            command.add(SweepWorker.class.getName());
+            command.add(planClass);
+
+            Worker worker = new Worker(workers.size());
+            workers.add(worker);
+            try {
+                worker.process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            } catch (IOException e) {
+                logger.error("Sweep: cannot start worker #%d: %s", worker.id, e.getMessage());
+                worker.isDead = true;
+                --restartsLeft;
+                return;
+            }
+            worker.out = new BufferedWriter(
+                new OutputStreamWriter(worker.process.getOutputStream(), StandardCharsets.UTF_8)
+            );
+
+            Thread reader = new Thread(() -> {
+                try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(worker.process.getInputStream(), StandardCharsets.UTF_8)
+                )) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        events.add(new Event(worker, line));
+                    }
+                } catch (IOException e) {
+                    // Same as the end of the stream.
+                }
+                events.add(new Event(worker, null));
+            }, "sweep-worker-" + worker.id);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void stopWorkers() {
+            for (Worker worker : workers) {
+                if (worker.isDead || worker.process == null) {
+                    continue;
+                }
+                try {
+                    worker.out.write("EXIT\n");
+                    worker.out.flush();
+                } catch (IOException e) {
+                    // Gone already.
+                }
+            }
+            for (Worker worker : workers) {
+                if (worker.process != null && !waitForExit(worker.process, 5000)) {
+                    worker.process.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    private static int waitForExit(Process process) {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static boolean waitForExit(Process process, long millis) {
+        try {
+            return process.waitFor(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static class Job {
+        final int index;
+        final int scenario;
+        final long seed;
+        int attempts;
+        SimulationResult result;
+
+        Job(int index, int scenario, long seed) {
+            this.index = index;
+            this.scenario = scenario;
+            this.seed = seed;
+        }
+    }
+
+    private static class Worker {
+        final int id;
+        Process process;
+        BufferedWriter out;
+        boolean isReady;
+        boolean isDead;
+        Job job;
+        long deadlineNanos;
+
+        Worker(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * A line from a worker. Null once it exited.
+     */
+    private record Event(Worker worker, String line) {
+    }
+}
@@ -0,0 +1,19 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.util.List;
+
+/**
+ * The scenarios of a sweep, rebuilt by every worker process from the class name,
+ * since configs hold lambdas and cannot be sent over the wire.
+ * Implementations need a public no-argument constructor,
+ * and must return the same scenarios in the same order every time.
+ */
+public interface SweepPlan {
+    List<Scenario> scenarios();
+}
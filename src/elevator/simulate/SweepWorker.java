@@ -0,0 +1,91 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A worker process of {@link SweepCoordinator}: runs one replication at a time, as told over its standard input,
+ * and answers on its standard output. Anything else printed goes to the standard error.
+ * <pre>
+ * java elevator.simulate.SweepWorker &lt;SweepPlan class&gt;
+ *
+ * worker:      READY
+ * coordinator: RUN &lt;job&gt; &lt;scenario&gt; &lt;seed&gt;
+ * worker:      RESULT &lt;job&gt; &lt;values of the SimulationResult&gt;  or  FAILED &lt;job&gt; &lt;reason&gt;
+ * coordinator: EXIT
+ * </pre>
+ * A replication calling System.exit takes the worker down with it, and the coordinator starts another.
+ */
+public class SweepWorker {
+    public static void main(String[] args) throws Exception {
+        // Before anything else, so that no logger gets hold of the protocol stream.
+        PrintStream protocol = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        List<Scenario> scenarios = loadPlan(args[0]).scenarios();
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+        protocol.println("READY");
+        protocol.flush();
+
+        String line;
+        while ((line = in.readLine()) != null && !line.equals("EXIT")) {
+            String[] fields = line.split(" ");
+            if (fields.length != 4 || !fields[0].equals("RUN")) {
+                System.err.println("Unknown command: " + line);
+                continue;
+            }
+            String job = fields[1];
+            try {
+                Scenario scenario = scenarios.get(Integer.parseInt(fields[2]));
+                ElevatorSimulator simulator = scenario.newSimulator(Long.parseLong(fields[3]), Logger.silent());
+                simulator.run();
+                protocol.println("RESULT " + job + " " + encode(simulator.getResult()));
+            } catch (Exception e) {
+                protocol.println("FAILED " + job + " " + String.valueOf(e).replace('\n', ' '));
+            }
+            protocol.flush();
+        }
+        // Do not wait for the threads a simulation may have left behind.
+        System.exit(0);
+    }
+
+    static SweepPlan loadPlan(String className) throws ReflectiveOperationException {
+        return (SweepPlan) Class.forName(className).getDeclaredConstructor().newInstance();
+    }
+
+    static String encode(SimulationResult result) {
+        return result.ridersRequested() + " " + result.ridersServed()
+            + " " + result.averageServeSeconds() + " " + result.servedPerElevatorHour()
+            + " " + result.waitP50Seconds() + " " + result.waitP90Seconds()
+            + " " + result.waitP99Seconds() + " " + result.waitMaxSeconds()
+            + " " + result.rideP50Seconds() + " " + result.rideP99Seconds();
+    }
+
+    /**
+     * @param fields the encoded values, from the given index on.
+     */
+    static SimulationResult decode(String[] fields, int from) {
+        return new SimulationResult(
+            Integer.parseInt(fields[from]),
+            Integer.parseInt(fields[from + 1]),
+            Double.parseDouble(fields[from + 2]),
+            Double.parseDouble(fields[from + 3]),
+            Integer.parseInt(fields[from + 4]),
+            Integer.parseInt(fields[from + 5]),
+            Integer.parseInt(fields[from + 6]),
+            Integer.parseInt(fields[from + 7]),
+            Integer.parseInt(fields[from + 8]),
+            Integer.parseInt(fields[from + 9])
+        );
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the records of a {@link TraceWriter} file, one at a time, without allocating per record.
+ * <pre>
+ * while (reader.next()) {
+ *     reader.getTime(); reader.getElevatorId(); ...
+ * }
+ * </pre>
+ */
+public class TraceReader implements Closeable {
+    // Records mapped at a time, so that traces larger than 2 GB can be read.
+    private static final int CHUNK_RECORDS = 1 << 22;
+    private static final TraceWriter.EventType[] TYPES = TraceWriter.EventType.values();
+
+    private final FileChannel channel;
+    private final long recordCount;
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private long record = -1;
+    private int offset;
+
+    public TraceReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(TraceWriter.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Keep reading.
+        }
+        header.flip();
+        if (header.remaining() < TraceWriter.HEADER_BYTES || header.getInt() != TraceWriter.MAGIC) {
+            channel.close();
+            throw new IOException("Not an elevator trace: " + path);
+        }
+        int version = header.getInt();
+        int recordBytes = header.getInt();
+        if (version != TraceWriter.VERSION || recordBytes != TraceWriter.RECORD_BYTES) {
+            channel.close();
+            throw new IOException("Unsupported trace version %d: %s".formatted(version, path));
+        }
+        header.getInt();
+        recordCount = header.getLong();
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return false if there are no more records.
+     */
+    public boolean next() throws IOException {
+        if (record + 1 >= recordCount) {
+            return false;
+        }
+        ++record;
+
+        if (chunk == null || record >= chunkStart + CHUNK_RECORDS) {
+            chunkStart = record;
+            long records = Math.min(CHUNK_RECORDS, recordCount - record);
+            chunk = channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                TraceWriter.HEADER_BYTES + chunkStart * TraceWriter.RECORD_BYTES,
+                records * TraceWriter.RECORD_BYTES
+            );
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        offset = (int) (record - chunkStart) * TraceWriter.RECORD_BYTES;
+        return true;
+    }
+
+    public int getTime() {
+        return chunk.getInt(offset);
+    }
+
+    public int getElevatorId() {
+        return chunk.getInt(offset + 4);
+    }
+
+    public TraceWriter.EventType getType() {
+        return TYPES[chunk.get(offset + 8)];
+    }
+
+    public int getStatus() {
+        return chunk.get(offset + 9);
+    }
+
+    public int getFloor() {
+        return chunk.getShort(offset + 10);
+    }
+
+    public int getValue0() {
+        return chunk.getInt(offset + 12);
+    }
+
+    public int getValue1() {
+        return chunk.getInt(offset + 16);
+    }
+
+    public int getValue2() {
+        return chunk.getInt(offset + 20);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
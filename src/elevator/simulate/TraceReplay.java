@@ -0,0 +1,151 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import elevator.Elevator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Replays a binary trace: recomputes the per-elevator report, and optionally prints the timeline.
+ * <pre>
+ * java elevator.simulate.TraceReplay trace.bin [--timeline] [--seconds N]
+ * </pre>
+ */
+public final class TraceReplay {
+    private static final Elevator.Status[] STATUSES = Elevator.Status.values();
+    private static final Elevator.Direction[] DIRECTIONS = Elevator.Direction.values();
+
+    // Per elevator, indexed by id.
+    private int[] ridersRequested = new int[0];
+    private int[] ridersServed = new int[0];
+    private int[] ridersLeft = new int[0];
+    private int[] stops = new int[0];
+    private int[] floorsTravelled = new int[0];
+    private int[] hallCalls = new int[0];
+    private int[] carCalls = new int[0];
+    private int elevatorCount;
+    private int lastTime;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: TraceReplay <trace> [--timeline] [--seconds N]");
+            System.exit(2);
+        }
+
+        boolean timeline = false;
+        int runningSeconds = -1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--timeline")) {
+                timeline = true;
+            } else if (args[i].equals("--seconds") && i + 1 < args.length) {
+                runningSeconds = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Logger logger = Logger.getDefault();
+        TraceReplay replay = new TraceReplay();
+        replay.replay(Path.of(args[0]), timeline ? logger : null);
+        replay.report(logger, runningSeconds > 0 ? runningSeconds : replay.lastTime);
+        logger.flush();
+    }
+
+    /**
+     * @param timeline where to print every record. Null to only count.
+     */
+    public void replay(Path path, Logger timeline) throws IOException {
+        try (TraceReader reader = new TraceReader(path)) {
+            while (reader.next()) {
+                int id = reader.getElevatorId();
+                int floor = reader.getFloor();
+                ensureElevator(id);
+                lastTime = Math.max(lastTime, reader.getTime());
+
+                if (timeline != null) {
+                    timeline.setTimeSource(reader::getTime);
+                }
+
+                switch (reader.getType()) {
+                    case STATUS -> {
+                        Elevator.Status status = STATUSES[reader.getStatus()];
+                        if (status == Elevator.Status.MOVING_UP || status == Elevator.Status.MOVING_DOWN) {
+                            ++floorsTravelled[id];
+                        }
+                        if (timeline != null) {
+                            timeline.info("Elevator #%d: %s on floor #%d, heading %s.",
+                                id, status, floor, DIRECTIONS[reader.getValue0()]);
+                        }
+                    }
+                    case HALL_CALL -> {
+                        ++hallCalls[id];
+                        if (timeline != null) {
+                            timeline.info("Elevator #%d: new random request, floor #%d, %s.",
+                                id, floor, DIRECTIONS[reader.getValue0()]);
+                        }
+                    }
+                    case CAR_CALL -> {
+                        ++carCalls[id];
+                        if (timeline != null) {
+                            timeline.info("Elevator #%d: a rider requested to visit floor #%d.", id, floor);
+                        }
+                    }
+                    case BOARDING -> {
+                        ++stops[id];
+                        ridersLeft[id] += reader.getValue0();
+                        ridersRequested[id] += reader.getValue1();
+                        ridersServed[id] += reader.getValue2();
+                        if (timeline != null) {
+                            timeline.info("Elevator #%d: on floor #%d, %d left, %d requested, %d served.",
+                                id, floor, reader.getValue0(), reader.getValue1(), reader.getValue2());
+                        }
+                    }
+                }
+            }
+        }
+        if (timeline != null) {
+            timeline.flush();
+            timeline.setTimeSource(null);
+        }
+    }
+
+    /**
+     * Print the same report as {@link Elevator#onTickDone}, plus what only the trace knows.
+     */
+    public void report(Logger logger, int runningSeconds) {
+        for (int id = 0; id < elevatorCount; id++) {
+            int requested = ridersRequested[id];
+            int served = ridersServed[id];
+
+            logger.info("\tElevator #%d: ", id);
+            logger.info("\t\t     Riders requested: %d", requested);
+            logger.info("\t\t        Riders served: %d", served);
+            logger.info("\t\t Riders not picked up: %d", requested - served);
+            logger.info("\t\t   Average serve time: %.2f seconds", (float) runningSeconds / served);
+            logger.info("\t\t          Riders left: %d", ridersLeft[id]);
+            logger.info("\t\t                Stops: %d", stops[id]);
+            logger.info("\t\t     Floors travelled: %d", floorsTravelled[id]);
+            logger.info("\t\t Hall / car calls made: %d / %d", hallCalls[id], carCalls[id]);
+        }
+    }
+
+    private void ensureElevator(int id) {
+        elevatorCount = Math.max(elevatorCount, id + 1);
+        if (id < stops.length) {
+            return;
+        }
+        int size = Math.max(id + 1, stops.length * 2);
+        ridersRequested = Arrays.copyOf(ridersRequested, size);
+        ridersServed = Arrays.copyOf(ridersServed, size);
+        ridersLeft = Arrays.copyOf(ridersLeft, size);
+        stops = Arrays.copyOf(stops, size);
+        floorsTravelled = Arrays.copyOf(floorsTravelled, size);
+        hallCalls = Arrays.copyOf(hallCalls, size);
+        carCalls = Arrays.copyOf(carCalls, size);
+    }
+}
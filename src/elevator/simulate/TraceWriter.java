@@ -0,0 +1,156 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only binary trace of elevator events, written through memory-mapped segments.
+ * No system call and no string formatting per event.
+ * <p>
+ * Layout: a header, then fixed-width records, all little-endian.
+ * <pre>
+ * Header (24 bytes): magic "ELVT", version, record size, reserved, record count (written on close).
+ * Record (24 bytes): time, elevator, type, status, floor, value0, value1, value2.
+ * </pre>
+ * Safe to use from several elevator threads: each record has a slot of its own.
+ */
+public class TraceWriter implements Closeable {
+    public static final int MAGIC = 0x54564c45; // "ELVT"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 24;
+    public static final int RECORD_BYTES = 24;
+
+    private static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    public enum EventType {
+        // value0: direction ordinal.
+        STATUS,
+
+        // value0: direction ordinal.
+        HALL_CALL,
+
+        // Requested from inside the elevator.
+        CAR_CALL,
+
+        // value0: riders left, value1: riders requested, as the elevator's report counts them, value2: riders served.
+        BOARDING
+    }
+
+    private final FileChannel channel;
+    private final int segmentRecords;
+    private final AtomicLong nextRecord = new AtomicLong();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private boolean isClosed;
+
+    public TraceWriter(Path path) throws IOException {
+        this(path, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    /**
+     * @param segmentRecords records per mapped segment. The file grows one segment at a time.
+     */
+    public TraceWriter(Path path, int segmentRecords) throws IOException {
+        this.segmentRecords = segmentRecords;
+        this.channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+        writeHeader(0);
+    }
+
+    public void write(
+        int time, int elevatorId, EventType type, int status, int floor, int value0, int value1, int value2
+    ) {
+        long record = nextRecord.getAndIncrement();
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = (int) (record % segmentRecords) * RECORD_BYTES;
+
+        segment.putInt(offset, time);
+        segment.putInt(offset + 4, elevatorId);
+        segment.put(offset + 8, (byte) type.ordinal());
+        segment.put(offset + 9, (byte) status);
+        segment.putShort(offset + 10, (short) floor);
+        segment.putInt(offset + 12, value0);
+        segment.putInt(offset + 16, value1);
+        segment.putInt(offset + 20, value2);
+    }
+
+    public long getRecordCount() {
+        return nextRecord.get();
+    }
+
+    /**
+     * Write the record count and cut the file to its exact size.
+     * The records must all be written by now.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+
+        long records = nextRecord.get();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        writeHeader(records);
+        channel.truncate(HEADER_BYTES + records * RECORD_BYTES);
+        channel.force(true);
+        channel.close();
+    }
+
+    private MappedByteBuffer segmentOf(long record) {
+        int index = (int) (record / segmentRecords);
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length) {
+            return mapped[index];
+        }
+        return mapSegment(index);
+    }
+
+    private synchronized MappedByteBuffer mapSegment(int index) {
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length) {
+            return mapped[index];
+        }
+
+        MappedByteBuffer[] grown = new MappedByteBuffer[index + 1];
+        System.arraycopy(mapped, 0, grown, 0, mapped.length);
+        long segmentBytes = (long) segmentRecords * RECORD_BYTES;
+        try {
+            for (int i = mapped.length; i <= index; i++) {
+                grown[i] = channel.map(
+                    FileChannel.MapMode.READ_WRITE, HEADER_BYTES + i * segmentBytes, segmentBytes
+                );
+                grown[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to extend the trace file.", e);
+        }
+        segments = grown;
+        return grown[index];
+    }
+
+    private void writeHeader(long records) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0).putLong(records).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The passengers of a {@link TrafficProfile}: Poisson arrivals at the rate of each period,
+ * trips drawn from its origin/destination matrix.
+ * <p>
+ * Arrivals are generated a chunk at a time into primitive arrays,
+ * so that taking the next one is only an array read.
+ * The same profile, floors and random stream always give the same passengers.
+ */
+public class TrafficGenerator implements PassengerSource {
+    private static final int CHUNK_SIZE = 4096;
+
+    private final List<TrafficProfile.Period> periods;
+    private final int numFloors;
+    private final UniformRandom random;
+
+    // Cumulative weights of the (origin, destination) pairs, at origin * numFloors + destination.
+    // One per matrix, built on first use.
+    private final Map<TrafficProfile.OdMatrix, double[]> cumulativeWeights = new IdentityHashMap<>();
+
+    // The current chunk.
+    private final int[] times = new int[CHUNK_SIZE];
+    private final int[] origins = new int[CHUNK_SIZE];
+    private final int[] destinations = new int[CHUNK_SIZE];
+    private int size;
+    private int position;
+
+    // Where the generation stopped: the time of the last arrival, in the period at the index.
+    private double time;
+    private int period;
+
+    /**
+     * @param profile its periods in time order.
+     */
+    public TrafficGenerator(TrafficProfile profile, int numFloors, UniformRandom random) {
+        this.periods = profile.periods();
+        this.numFloors = numFloors;
+        this.random = random;
+    }
+
+    @Override
+    public int peekTime() {
+        if (position == size) {
+            fill();
+        }
+        return size == 0 ? NO_MORE_ARRIVALS : times[position];
+    }
+
+    @Override
+    public int peekOrigin() {
+        return origins[position];
+    }
+
+    @Override
+    public int peekDestination() {
+        return destinations[position];
+    }
+
+    @Override
+    public void pop() {
+        if (position < size) {
+            ++position;
+        }
+    }
+
+    private void fill() {
+        size = 0;
+        position = 0;
+
+        while (size < CHUNK_SIZE && period < periods.size()) {
+            TrafficProfile.Period current = periods.get(period);
+            double[] weights = cumulativeWeightsOf(current.od());
+            double perSecond = current.arrivalsPerHour() / 3600;
+
+            if (perSecond <= 0 || weights[weights.length - 1] <= 0) {
+                nextPeriod(current);
+                continue;
+            }
+
+            // Exponential gaps. Memoryless, so a gap cut by the end of the period is simply dropped.
+            double arrival = Math.max(time, current.startSecond())
+                - Math.log(1 - random.nextDouble()) / perSecond;
+            if (arrival >= current.endSecond()) {
+                nextPeriod(current);
+                continue;
+            }
+            time = arrival;
+
+            int pair = sample(weights);
+            times[size] = (int) arrival;
+            origins[size] = pair / numFloors;
+            destinations[size] = pair % numFloors;
+            ++size;
+        }
+    }
+
+    private void nextPeriod(TrafficProfile.Period current) {
+        time = Math.max(time, current.endSecond());
+        ++period;
+    }
+
+    /**
+     * @return the pair of the first cumulative weight above a uniform draw.
+     */
+    private int sample(double[] weights) {
+        double target = random.nextDouble() * weights[weights.length - 1];
+        int low = 0;
+        int high = weights.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (weights[middle] > target) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private double[] cumulativeWeightsOf(TrafficProfile.OdMatrix od) {
+        return cumulativeWeights.computeIfAbsent(od, (key) -> {
+            double[] weights = new double[numFloors * numFloors];
+            double total = 0;
+            for (int origin = 0; origin < numFloors; origin++) {
+                for (int destination = 0; destination < numFloors; destination++) {
+                    if (origin != destination) {
+                        total += Math.max(od.weight(origin, destination, numFloors), 0);
+                    }
+                    weights[origin * numFloors + destination] = total;
+                }
+            }
+            return weights;
+        });
+    }
+}
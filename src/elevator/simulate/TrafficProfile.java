@@ -0,0 +1,99 @@
+/*
+ * Created by Zhen Guan
+ * Student number: 202191382
+ * Email: zguan@mun.ca
+ */
+
+package elevator.simulate;
+
+import java.util.List;
+
+/**
+ * How many passengers arrive in a building, when, and from where to where.
+ * A list of periods, each with a constant arrival rate and an origin/destination matrix.
+ * Between and after the periods, nobody arrives.
+ * The floors are only known once the profile is applied to a building,
+ * so the matrices are given as weights of an (origin, destination) pair.
+ */
+public record TrafficProfile(List<Period> periods) {
+    /**
+     * @param startSecond     inclusive, since the simulation started.
+     * @param endSecond       exclusive.
+     * @param arrivalsPerHour the mean of the Poisson arrivals, for the whole building.
+     */
+    public record Period(int startSecond, int endSecond, double arrivalsPerHour, OdMatrix od) {
+    }
+
+    /**
+     * The relative weight of passengers going from one floor to another.
+     * Needs not be normalized. Trips to the same floor are ignored.
+     */
+    public interface OdMatrix {
+        double weight(int origin, int destination, int numFloors);
+
+        /**
+         * @param weights by origin, then destination.
+         */
+        static OdMatrix of(double[][] weights) {
+            return (origin, destination, numFloors) -> weights[origin][destination];
+        }
+
+        /**
+         * A mix of the three classic streams, by share of the passengers:
+         * incoming from the lobby (floor 0) to the upper floors, outgoing from them to the lobby,
+         * and interfloor between two upper floors. Uniform within each stream.
+         */
+        static OdMatrix mix(double incoming, double outgoing, double interfloor) {
+            return (origin, destination, numFloors) -> {
+                int upperFloors = numFloors - 1;
+                if (origin == destination || upperFloors < 1) {
+                    return 0;
+                }
+                if (origin == 0) {
+                    return incoming / upperFloors;
+                }
+                if (destination == 0) {
+                    return outgoing / upperFloors;
+                }
+                return upperFloors < 2 ? 0 : interfloor / ((double) upperFloors * (upperFloors - 1));
+            };
+        }
+    }
+
+    // Morning: most passengers come in from the lobby.
+    public static final OdMatrix UP_PEAK = OdMatrix.mix(0.85, 0.05, 0.10);
+
+    // Evening: most passengers leave for the lobby.
+    public static final OdMatrix DOWN_PEAK = OdMatrix.mix(0.05, 0.85, 0.10);
+
+    // Noon: out to lunch and back.
+    public static final OdMatrix LUNCH = OdMatrix.mix(0.45, 0.45, 0.10);
+
+    // Between floors, during the rest of the day.
+    public static final OdMatrix INTERFLOOR = OdMatrix.mix(0.10, 0.10, 0.80);
+
+    /**
+     * @return one period, the same traffic all along.
+     */
+    public static TrafficProfile constant(int seconds, double arrivalsPerHour, OdMatrix od) {
+        return new TrafficProfile(List.of(new Period(0, seconds, arrivalsPerHour, od)));
+    }
+
+    /**
+     * @param peakArrivalsPerHour the arrivals of the busiest hour.
+     * @return an office day from 7 a.m. to 7 p.m., the simulation starting at 7 a.m.:
+     * up-peak around 8, lunch at noon, down-peak around 5, interfloor in between.
+     */
+    public static TrafficProfile officeDay(double peakArrivalsPerHour) {
+        int hour = 3600;
+        return new TrafficProfile(List.of(
+            new Period(0, hour, peakArrivalsPerHour * 0.5, UP_PEAK),
+            new Period(hour, 2 * hour, peakArrivalsPerHour, UP_PEAK),
+            new Period(2 * hour, 5 * hour, peakArrivalsPerHour * 0.3, INTERFLOOR),
+            new Period(5 * hour, 6 * hour, peakArrivalsPerHour * 0.6, LUNCH),
+            new Period(6 * hour, 10 * hour, peakArrivalsPerHour * 0.3, INTERFLOOR),
+            new Period(10 * hour, 11 * hour, peakArrivalsPerHour, DOWN_PEAK),
+            new Period(11 * hour, 12 * hour, peakArrivalsPerHour * 0.4, DOWN_PEAK)
+        ));
+    }
+}
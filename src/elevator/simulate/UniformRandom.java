@@ -6,21 +6,134 @@
 
 package elevator.simulate;
 
-import java.util.Date;
-import java.util.Random;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Seedable and splittable random numbers, using the SplitMix64 algorithm
+ * of {@link java.util.SplittableRandom}.
+ * Not thread-safe: give each thread, elevator or replication a stream of its own with {@link #split()}.
+ * Nothing is allocated once the stream is created.
+ */
 public class UniformRandom {
-    Random random = new Random(new Date().getTime());
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    // Unseeded streams created in the same nanosecond still differ.
+    private static final AtomicLong defaultSeedGenerator = new AtomicLong(mix64(System.nanoTime()));
+
+    protected long seed;
+    // Only changed to move to another stream, by {@link RandomStreams} or {@link #readState}.
+    protected long gamma;
+
+    public UniformRandom() {
+        this(mix64(defaultSeedGenerator.getAndAdd(2 * GOLDEN_GAMMA) ^ System.nanoTime()));
+    }
+
+    public UniformRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    protected UniformRandom(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Destructive method.
+     * @return a new stream, statistically independent of this one.
+     * The same seed always splits into the same streams in the same order.
+     */
+    public UniformRandom split() {
+        return new UniformRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Write where the stream is, so that {@link #readState} continues it with the same numbers.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(seed);
+        out.writeLong(gamma);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        seed = in.readLong();
+        gamma = in.readLong();
+    }
 
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * @return a uniform value in [0, bound).
+     * @throws IllegalArgumentException if the bound is not positive.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("The bound must be positive, not %d.".formatted(bound));
+        }
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        // Reject the values of the incomplete last range, to stay unbiased.
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1) {
+            // Retry.
+        }
+        return r;
+    }
+
+    /**
+     * @return a uniform value in [minInclusive, maxInclusive].
+     * @throws IllegalArgumentException if the range is empty, or holds more than {@link Integer#MAX_VALUE} values.
+     */
     public int nextInt(int minInclusive, int maxInclusive) {
-        return random.nextInt(maxInclusive - minInclusive + 1) + minInclusive;
+        return nextInt(maxInclusive - minInclusive + 1) + minInclusive;
     }
 
     public boolean nextBoolean() {
-        return random.nextBoolean();
+        return mix32(nextSeed()) < 0;
+    }
+
+    /**
+     * @return a value in [0, 1).
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    public int nextRandomItemOf(int[] values) {
+        return values[nextInt(values.length)];
     }
 
     public Object nextRandomItemOf(Object[] values) {
-        return values[random.nextInt(values.length)];
+        return values[nextInt(values.length)];
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        // Odd, with enough bit flips to spread the seeds well.
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
     }
 }